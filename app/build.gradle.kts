@@ -2,6 +2,7 @@ plugins {
     application
     id("org.openjfx.javafxplugin") version "0.1.0"
     id("org.gradlex.extra-java-module-info") version "1.8"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -33,6 +34,10 @@ tasks.named<Test>("test") {
     useJUnitPlatform()
 }
 
+jmh {
+    jmhVersion = "1.37"
+}
+
 javafx {
     version = "23"
     modules("javafx.controls")
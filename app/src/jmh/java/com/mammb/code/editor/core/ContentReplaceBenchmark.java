@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.Caret.Range;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark of replacing multiple ranges as a single undo unit, against an edit for each range.
+ * The content is created again for each invocation, as the replacement edits it.
+ * @author Naotsugu Kobayashi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentReplaceBenchmark {
+
+    @Param({"10000"})
+    private int rows;
+
+    @Param({"10", "100", "1000"})
+    private int ranges;
+
+    private Content content;
+    private List<Range> targets;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        content = Content.of();
+        content.insert(Point.of(0, 0), IntStream.range(0, rows)
+                .mapToObj(i -> "    var value" + i + " = foo(" + i + ");")
+                .collect(Collectors.joining("\n")));
+        targets = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            int row = i * (rows / ranges);
+            targets.add(new Range(Point.of(row, 4), Point.of(row, 7)));
+        }
+    }
+
+    @Benchmark
+    public List<Point> replaceInSingleUnit() {
+        return content.replace(targets, "final");
+    }
+
+    @Benchmark
+    public Point replaceOneByOne() {
+        // the loop replaced before: from the last range, so that the preceding ranges keep their positions
+        Point point = null;
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            Range range = targets.get(i);
+            point = content.replace(range.min(), range.max(), "final");
+        }
+        return point;
+    }
+
+}
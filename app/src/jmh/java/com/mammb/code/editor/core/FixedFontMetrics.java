@@ -0,0 +1,36 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+/**
+ * The font metrics of a fixed width font, for the benchmarks.
+ * @author Naotsugu Kobayashi
+ */
+public class FixedFontMetrics implements FontMetrics {
+
+    @Override public float getMaxAscent() { return 12; }
+    @Override public float getAscent() { return 12; }
+    @Override public float getXheight() { return 6; }
+    @Override public int getBaseline() { return 12; }
+    @Override public float getDescent() { return 4; }
+    @Override public float getMaxDescent() { return 4; }
+    @Override public float getLeading() { return 0; }
+    @Override public float getLineHeight() { return 16; }
+    @Override public float getAdvance(int codePoint) { return 8; }
+    @Override public float getAdvance(String str) { return 8 * str.length(); }
+    @Override public float getAdvance(char high, char low) { return 16; }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark of finding all matches in a chunk of rows, against the literal search by rows.
+ * @author Naotsugu Kobayashi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final String QUERY = "value1234";
+
+    private String text;
+    private String[] rows;
+    private Query literal;
+    private Query literalIgnoreCase;
+    private Query regex;
+
+    @Setup
+    public void setUp() {
+        rows = IntStream.range(0, 20_000)
+                .mapToObj(i -> "    private final int value" + i + " = compute(" + i + ", \"text\");\n")
+                .toArray(String[]::new);
+        text = String.join("", rows);
+        literal = Query.of(QUERY, false, false);
+        literalIgnoreCase = Query.of(QUERY.toUpperCase(), false, true);
+        regex = Query.of("value12\\d4", true, false);
+    }
+
+    @Benchmark
+    public int literalByRows() {
+        // the literal path before the query engine: String.indexOf over each row
+        int n = 0;
+        for (String row : rows) {
+            for (int i = row.indexOf(QUERY); i >= 0; i = row.indexOf(QUERY, i + QUERY.length())) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int literal() {
+        return count(literal);
+    }
+
+    @Benchmark
+    public int literalIgnoreCase() {
+        return count(literalIgnoreCase);
+    }
+
+    @Benchmark
+    public int regex() {
+        return count(regex);
+    }
+
+    private int count(Query query) {
+        int[] n = new int[1];
+        query.findAll(text, (start, end) -> n[0]++);
+        return n[0];
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.layout;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.Content;
+import com.mammb.code.editor.core.FixedFontMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark of editing near the top of a large file in wrap mode.
+ * @author Naotsugu Kobayashi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrapIndexBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    private Content content;
+    private WrapLayout layout;
+    private WrapIndex index;
+
+    @Setup
+    public void setUp() {
+        content = Content.of();
+        content.insert(Point.of(0, 0), IntStream.range(0, rows)
+                .mapToObj(i -> "row " + i)
+                .collect(Collectors.joining("\n")));
+        layout = new WrapLayout(content, new FixedFontMetrics());
+        layout.setScreenWidth(800);
+        layout.texts(0, 50);
+        layout.rowToFirstLine(rows - 1);
+        index = new WrapIndex(rows);
+    }
+
+    @Benchmark
+    public int insertAndRemoveRows() {
+        index.insert(10, 1);
+        index.set(10, 2);
+        index.remove(10, 1);
+        return index.rowToFirstLine(rows / 2);
+    }
+
+    @Benchmark
+    public int editNewLineAndBackspace() {
+        // the edit adds a row at the top, and the backspace removes it again
+        content.insert(Point.of(10, 2), "\n");
+        layout.refreshAt(10, 12);
+        content.backspace(Point.of(11, 0));
+        layout.refreshAt(10, 11);
+        return layout.rowToFirstLine(rows / 2);
+    }
+
+}
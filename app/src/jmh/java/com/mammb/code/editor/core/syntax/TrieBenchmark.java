@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.syntax;
+
+import com.mammb.code.editor.core.text.Style.StyleSpan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of tokenizing a large Java source, which looks up every identifier in the keyword trie.
+ * @author Naotsugu Kobayashi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieBenchmark {
+
+    private static final String[] SOURCE = """
+            package com.example;
+
+            import java.util.List;
+
+            /**
+             * The sample class.
+             */
+            public final class Sample<T extends Comparable<T>> implements Runnable {
+                private static final int LIMIT = 1024;
+                private final List<T> items;
+
+                public Sample(List<T> items) {
+                    this.items = items;
+                }
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < LIMIT && i < items.size(); i++) {
+                        if (items.get(i) == null) continue;
+                        synchronized (this) {
+                            String s = "item " + i; // the item
+                            System.out.println(s);
+                        }
+                    }
+                }
+            }
+            """.split("\\n");
+
+    private final Syntax syntax = Syntax.of("java");
+    private final List<StyleSpan> spans = new ArrayList<>();
+    private String[] lines;
+    private Trie keywords;
+
+    @Setup
+    public void setUp() {
+        lines = new String[SOURCE.length * 500];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = SOURCE[i % SOURCE.length];
+        }
+        keywords = Trie.of("""
+            abstract,continue,for,new,switch,assert,default,goto,package,synchronized,boolean,do,if,private,
+            this,break,double,implements,protected,throw,byte,else,import,public,throws,case,enum,instanceof,
+            return,transient,catch,extends,int,short,try,char,final,interface,static,void,class,finally,long,
+            strictfp,volatile,const,float,native,super,while,var,record,sealed,with,yield,to,transitive,uses
+            """);
+    }
+
+    @Benchmark
+    public int tokenize() {
+        int n = 0;
+        LineState state = LineState.NONE;
+        for (String line : lines) {
+            state = syntax.apply(state, line, spans);
+            n += spans.size();
+            spans.clear();
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int matchIdentifiers() {
+        int n = 0;
+        for (String line : lines) {
+            int start = -1;
+            for (int i = 0; i <= line.length(); i++) {
+                boolean part = i < line.length() && Character.isJavaIdentifierPart(line.charAt(i));
+                if (part && start < 0) {
+                    start = i;
+                } else if (!part && start >= 0) {
+                    if (keywords.match(line, start, i)) n++;
+                    start = -1;
+                }
+            }
+        }
+        return n;
+    }
+
+}
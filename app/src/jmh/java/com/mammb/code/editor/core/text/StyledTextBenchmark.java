@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.text;
+
+import com.mammb.code.editor.core.FixedFontMetrics;
+import com.mammb.code.editor.core.syntax.LineState;
+import com.mammb.code.editor.core.syntax.Syntax;
+import com.mammb.code.editor.core.text.Style.StyleSpan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of styling a 10k-character minified JavaScript line with many tokens.
+ * @author Naotsugu Kobayashi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StyledTextBenchmark {
+
+    private RowText text;
+    private List<StyleSpan> spans;
+
+    @Setup
+    public void setUp() {
+        var sb = new StringBuilder();
+        for (int i = 0; sb.length() < 10_000; i++) {
+            sb.append("var a").append(i).append("=function(b){return b+\"s").append(i).append("\";};");
+        }
+        text = RowText.of(0, sb.toString(), new FixedFontMetrics());
+        spans = new ArrayList<>();
+        Syntax.of("js").apply(LineState.NONE, text.value(), spans);
+    }
+
+    @Benchmark
+    public double styleAndDraw() {
+        double width = 0;
+        for (StyledText st : StyledText.of(text).putAll(spans).build()) {
+            // what the drawing reads of each run
+            width += st.width() + st.value().length() + st.styles().size();
+        }
+        return width;
+    }
+
+}
@@ -55,9 +55,27 @@ public interface Action {
         OPEN, SAVE, SAVE_AS, NEW,
         WRAP,
         FIND,
+        FOLLOW,
         ESC, EMPTY,
         ;
 
+        public boolean moveCaret() {
+            return switch (this) {
+                case CARET_RIGHT, CARET_LEFT, CARET_UP, CARET_DOWN,
+                     SELECT_CARET_RIGHT, SELECT_CARET_LEFT, SELECT_CARET_UP, SELECT_CARET_DOWN,
+                     HOME, SELECT_HOME, END, SELECT_END,
+                     PAGE_UP, SELECT_PAGE_UP, PAGE_DOWN, SELECT_PAGE_DOWN -> true;
+                default -> false;
+            };
+        }
+
+        public boolean edit() {
+            return switch (this) {
+                case TYPED, DELETE, BACK_SPACE, PASTE, CUT, UNDO, REDO -> true;
+                default -> false;
+            };
+        }
+
         public boolean syncCaret() {
             return !(this == OPEN || this == SAVE || this ==  SAVE_AS ||
                     this ==  NEW || this == ESC || this ==  EMPTY);
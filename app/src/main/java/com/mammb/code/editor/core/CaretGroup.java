@@ -17,6 +17,7 @@ package com.mammb.code.editor.core;
 
 import com.mammb.code.editor.core.Caret.Range;
 import com.mammb.code.editor.core.Caret.Point;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,44 +27,106 @@ import java.util.List;
  */
 public interface CaretGroup {
 
+    /**
+     * Get the primary caret, the one the carets were added to.
+     * @return the primary caret
+     */
     Caret getFirst();
+
+    /**
+     * Remove the carets other than the primary caret.
+     * @return the primary caret
+     */
     Caret unique();
     List<Point> points();
     List<Caret> carets();
+
+    /**
+     * Get the carets on the rows.
+     * @param startRow the start row
+     * @param endRow the end row(exclusive)
+     * @return the carets on the rows, in order
+     */
+    List<Caret> carets(int startRow, int endRow);
+
+    /**
+     * Get whether any caret is on the row.
+     * @param row the row
+     * @return {@code true} if any caret is on the row
+     */
+    boolean hasCaretOn(int row);
     List<Range> marked();
     List<Range> ranges();
     boolean hasMarked();
+
+    /**
+     * Move the carets to the points.
+     * If the points are as many as the carets, they are taken as the points of the carets
+     * in order, and the primary caret moves to its point.
+     * @param points the points
+     */
     void at(List<Point> points);
     void add(List<Point> points);
+
+    /**
+     * Sort the carets, and merge the carets at the same point into one.
+     * A marked caret is kept in preference to an unmarked one.
+     * The primary caret stays primary, merged into the caret at its point.
+     */
+    void merge();
     int size();
 
     static CaretGroup of() {
         return new CaretGroupImpl();
     }
 
+    /**
+     * The caret group held in parallel arrays.
+     * <p>
+     * The carets are kept sorted by {@link #merge()}. The {@link Caret}s given by this group
+     * are views of an index of the arrays, which are valid until the next merge.
+     * </p>
+     */
     class CaretGroupImpl implements CaretGroup {
-        private final List<Caret> carets = new ArrayList<>();
+
+        /** The store of the carets. */
+        private Store store = new Store(16);
+        /** The number of carets. */
+        private int size;
+        /** The index of the primary caret. */
+        private int primary = 0;
+        /** The view of the carets. */
+        private final List<Caret> carets = new CaretList();
 
         public CaretGroupImpl() {
-            carets.add(Caret.of());
+            store.clear(0, 0, 0);
+            size = 1;
         }
 
         @Override
         public Caret getFirst() {
-            return carets.getFirst();
+            return new CaretView(primary);
         }
 
         @Override
         public Caret unique() {
-            if (carets.size() > 1) {
-                carets.subList(1, carets.size()).clear();
+            if (primary > 0) {
+                store.set(0, store, primary);
+                primary = 0;
             }
-            return carets.getFirst();
+            size = 1;
+            return getFirst();
         }
 
         @Override
         public List<Point> points() {
-            return carets.stream().map(Caret::pointFlush).toList();
+            List<Point> points = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                points.add(store.flushRows[i] < 0
+                        ? Point.of(store.rows[i], store.cols[i])
+                        : Point.of(store.flushRows[i], store.flushCols[i]));
+            }
+            return points;
         }
 
         @Override
@@ -71,37 +134,341 @@ public interface CaretGroup {
             return carets;
         }
 
+        @Override
+        public List<Caret> carets(int startRow, int endRow) {
+            int from = indexOf(startRow);
+            int to = indexOf(endRow);
+            return carets.subList(from, Math.max(from, to));
+        }
+
+        @Override
+        public boolean hasCaretOn(int row) {
+            int i = indexOf(row);
+            return i < size && store.rows[i] == row;
+        }
+
         @Override
         public List<Range> marked() {
-            return carets.stream().filter(Caret::isMarked).map(Caret::markedRange).toList();
+            List<Range> ranges = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (store.markRows[i] >= 0) ranges.add(range(i));
+            }
+            return ranges;
         }
 
         @Override
         public List<Range> ranges() {
-            return carets.stream().map(c -> c.isMarked() ? c.markedRange() : new Range(c.point(), c.point())).toList();
+            List<Range> ranges = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (store.markRows[i] >= 0) {
+                    ranges.add(range(i));
+                } else {
+                    Point p = Point.of(store.rows[i], store.cols[i]);
+                    ranges.add(new Range(p, p));
+                }
+            }
+            return ranges;
         }
 
         @Override
         public boolean hasMarked() {
-            return carets.stream().anyMatch(Caret::isMarked);
+            for (int i = 0; i < size; i++) {
+                if (store.markRows[i] >= 0) return true;
+            }
+            return false;
         }
 
         @Override
         public void at(List<Point> points) {
-            carets.clear();
+            if (points.isEmpty()) return;
+            if (points.size() != size) primary = 0;
+            size = 0;
             add(points);
         }
 
         @Override
         public void add(List<Point> points) {
-            points.stream().distinct()
-                    .forEach(p -> carets.add(Caret.of(p.row(), p.col())));
+            if (size + points.size() > store.rows.length) {
+                store = store.copyOf(Math.max(size + points.size(), store.rows.length * 2));
+            }
+            for (Point p : points) {
+                store.clear(size++, p.row(), p.col());
+            }
+            merge();
+        }
+
+        @Override
+        public void merge() {
+            if (size <= 1) return;
+            int[] order = order();
+            // merge in place if the carets are in order
+            Store sorted = (order == null) ? store : new Store(store.rows.length);
+            int n = 0;
+            int p = 0;
+            for (int k = 0; k < size; k++) {
+                int i = (order == null) ? k : order[k];
+                if (n > 0 && sorted.rows[n - 1] == store.rows[i] && sorted.cols[n - 1] == store.cols[i]) {
+                    if (store.markRows[i] >= 0 && sorted.markRows[n - 1] < 0) {
+                        sorted.set(n - 1, store, i);
+                    }
+                } else {
+                    sorted.set(n++, store, i);
+                }
+                if (i == primary) p = n - 1;
+            }
+            store = sorted;
+            size = n;
+            primary = p;
         }
 
         @Override
         public int size() {
-            return carets.size();
+            return size;
+        }
+
+        private Range range(int i) {
+            return new Range(
+                    Point.of(store.rows[i], store.cols[i]),
+                    Point.of(store.markRows[i], store.markCols[i]));
+        }
+
+        /**
+         * Get the index of the first caret on or after the row.
+         * @param row the row
+         * @return the index of the caret
+         */
+        private int indexOf(int row) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (store.rows[mid] < row) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Get the indexes of the carets in the order of their points.
+         * @return the indexes of the carets, or {@code null} if the carets are in order
+         */
+        private int[] order() {
+            long[] keys = new long[size];
+            int[] src = new int[size];
+            boolean sorted = true;
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) store.rows[i] << 32) | store.cols[i];
+                src[i] = i;
+                sorted &= i == 0 || keys[i - 1] <= keys[i];
+            }
+            if (sorted) return null;
+            int[] dst = new int[size];
+            for (int width = 1; width < size; width <<= 1) {
+                for (int lo = 0; lo < size; lo += width << 1) {
+                    int mid = Math.min(lo + width, size);
+                    int hi = Math.min(lo + (width << 1), size);
+                    int i = lo, j = mid, k = lo;
+                    while (i < mid && j < hi) dst[k++] = (keys[src[j]] < keys[src[i]]) ? src[j++] : src[i++];
+                    while (i < mid) dst[k++] = src[i++];
+                    while (j < hi) dst[k++] = src[j++];
+                }
+                int[] t = src;
+                src = dst;
+                dst = t;
+            }
+            return src;
+        }
+
+        /**
+         * The arrays of the caret attributes.
+         * A negative row means that the point is absent.
+         */
+        private static class Store {
+            private final int[] rows;
+            private final int[] cols;
+            private final int[] markRows;
+            private final int[] markCols;
+            private final int[] flushRows;
+            private final int[] flushCols;
+            private final double[] vPos;
+            private final boolean[] floating;
+
+            Store(int capacity) {
+                rows = new int[capacity];
+                cols = new int[capacity];
+                markRows = new int[capacity];
+                markCols = new int[capacity];
+                flushRows = new int[capacity];
+                flushCols = new int[capacity];
+                vPos = new double[capacity];
+                floating = new boolean[capacity];
+            }
+
+            void clear(int i, int row, int col) {
+                rows[i] = row;
+                cols[i] = col;
+                markRows[i] = -1;
+                flushRows[i] = -1;
+                vPos[i] = -1;
+                floating[i] = false;
+            }
+
+            void set(int j, Store src, int i) {
+                rows[j] = src.rows[i];
+                cols[j] = src.cols[i];
+                markRows[j] = src.markRows[i];
+                markCols[j] = src.markCols[i];
+                flushRows[j] = src.flushRows[i];
+                flushCols[j] = src.flushCols[i];
+                vPos[j] = src.vPos[i];
+                floating[j] = src.floating[i];
+            }
+
+            Store copyOf(int capacity) {
+                Store store = new Store(capacity);
+                for (int i = 0; i < rows.length; i++) {
+                    store.set(i, this, i);
+                }
+                return store;
+            }
+        }
+
+        /**
+         * The list of the caret views.
+         */
+        private class CaretList extends AbstractList<Caret> {
+            @Override
+            public Caret get(int index) {
+                return new CaretView(index);
+            }
+            @Override
+            public int size() {
+                return size;
+            }
         }
+
+        /**
+         * The view of a caret.
+         */
+        private class CaretView implements Caret {
+            private final int i;
+
+            CaretView(int i) {
+                this.i = i;
+            }
+
+            @Override
+            public Point point() {
+                return Point.of(store.rows[i], store.cols[i]);
+            }
+
+            @Override
+            public int row() {
+                return store.rows[i];
+            }
+
+            @Override
+            public int col() {
+                return store.cols[i];
+            }
+
+            @Override
+            public void at(int row, int col) {
+                store.rows[i] = row;
+                store.cols[i] = col;
+                store.vPos[i] = -1;
+                store.flushRows[i] = -1;
+            }
+
+            @Override
+            public void at(int row, int col, double vPos) {
+                at(row, col);
+                store.vPos[i] = vPos;
+            }
+
+            @Override
+            public void floatAt(int row, int col) {
+                at(row, col);
+                store.floating[i] = true;
+            }
+
+            @Override
+            public void flushAt(int row, int col) {
+                store.flushRows[i] = row;
+                store.flushCols[i] = col;
+            }
+
+            @Override
+            public void markTo(int markRow, int markCol, int row, int col) {
+                store.markRows[i] = markRow;
+                store.markCols[i] = markCol;
+                at(row, col);
+            }
+
+            @Override
+            public void clearFloat() {
+                store.floating[i] = false;
+            }
+
+            @Override
+            public void clearFlush() {
+                store.flushRows[i] = -1;
+            }
+
+            @Override
+            public boolean hasFlush() {
+                return store.flushRows[i] >= 0;
+            }
+
+            @Override
+            public Point pointFlush() {
+                return hasFlush() ? Point.of(store.flushRows[i], store.flushCols[i]) : point();
+            }
+
+            @Override
+            public void mark() {
+                store.markRows[i] = store.rows[i];
+                store.markCols[i] = store.cols[i];
+            }
+
+            @Override
+            public void clearMark() {
+                store.markRows[i] = -1;
+            }
+
+            @Override
+            public boolean isMarked() {
+                return store.markRows[i] >= 0;
+            }
+
+            @Override
+            public boolean isFloating() {
+                return store.floating[i];
+            }
+
+            @Override
+            public Range markedRange() {
+                return isMarked() ? range(i) : null;
+            }
+
+            @Override
+            public double vPos() {
+                return store.vPos[i];
+            }
+
+            @Override
+            public boolean isZero() {
+                return store.rows[i] == 0 && store.cols[i] == 0;
+            }
+
+            @Override
+            public int compareTo(Caret that) {
+                return point().compareTo(that.point());
+            }
+        }
+
     }
 
 }
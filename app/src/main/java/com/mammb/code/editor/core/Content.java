@@ -19,9 +19,12 @@ import com.mammb.code.piecetable.TextEdit;
 import com.mammb.code.editor.core.Caret.Point;
 import com.mammb.code.editor.core.Caret.PointRec;
 import com.mammb.code.editor.core.Caret.Range;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 
@@ -57,11 +60,45 @@ public interface Content {
     int rows();
     Optional<Path> path();
     void save(Path path);
+    /**
+     * Get whether the content is read-only.
+     * The edits of read-only content leave it as it is.
+     * @return {@code true} if the content is read-only
+     */
+    boolean isReadOnly();
     boolean isModified();
     Point insertFlush(Point point, String text);
     void clearFlush();
     List<Point> findAll(String text);
 
+    /**
+     * Get the version of the content.
+     * The version is incremented on every modification, including flushes.
+     * @return the version
+     */
+    long version();
+
+    /**
+     * Make the rows loaded in the background so far visible.
+     * The last visible row may change on sync, as it is completed.
+     * @return {@code true} if the visible rows have changed
+     */
+    boolean sync();
+
+    /**
+     * Get the progress of loading.
+     * @return the loaded ratio, {@code 1.0} if the content is fully loaded
+     */
+    double progress();
+
+    /**
+     * Follow the file, appending the bytes written to it as they are written.
+     * The appended rows become visible on {@link #sync()}.
+     * @param on whether to follow
+     * @return {@code true} if the content follows the file
+     */
+    boolean follow(boolean on);
+
     static Content of() {
         return new ContentImpl();
     }
@@ -69,10 +106,37 @@ public interface Content {
         return new ContentImpl(path);
     }
 
+    /**
+     * Create the read-only content of a large file, which is memory-mapped.
+     * @param path the path of the file
+     * @return the read-only content
+     */
+    static Content readOnlyOf(Path path) {
+        return new MappedContent(path);
+    }
+
+    /**
+     * Get whether the file is large enough to be opened read-only.
+     * @param path the path of the file
+     * @return {@code true} if the file is large, {@code false} if its size cannot be read
+     */
+    static boolean isLarge(Path path) {
+        try {
+            return Files.size(path) >= MappedContent.LARGE_FILE_SIZE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
 
     class ContentImpl implements Content {
         private final TextEdit edit;
         private final List<PointText> flushes = new ArrayList<>();
+        /** The recorded undo units, the last on top. */
+        private final Deque<Unit> undoUnits = new ArrayDeque<>();
+        /** The recorded redo units, the next on top. */
+        private final Deque<Unit> redoUnits = new ArrayDeque<>();
+        private long version = 0;
 
         public ContentImpl() {
             this.edit = TextEdit.of();
@@ -83,69 +147,156 @@ public interface Content {
 
         @Override
         public Point insert(Point point, String text) {
+            version++;
             var pos = edit.insert(point.row(), point.col(), text);
+            edited();
             return new PointRec(pos.row(), pos.col());
         }
 
         @Override
         public List<Point> insert(List<Point> points, String text) {
+            version++;
             var pos = edit.insert(points.stream()
                     .map(p -> new TextEdit.Pos(p.row(), p.col())).toList(), text);
+            edited();
             return pos.stream().map(p -> (Point) new PointRec(p.row(), p.col())).toList();
         }
 
         @Override
         public String delete(Point point) {
-            return edit.delete(point.row(), point.col());
+            version++;
+            String deleted = edit.delete(point.row(), point.col());
+            edited();
+            return deleted;
         }
 
         @Override
         public List<Point> delete(List<Point> points) {
+            version++;
             var pos = edit.delete(points.stream()
                     .map(p -> new TextEdit.Pos(p.row(), p.col())).toList());
+            edited();
             return pos.stream().map(p -> (Point) new PointRec(p.row(), p.col())).toList();
         }
 
         @Override
         public Point backspace(Point point) {
+            version++;
             var pos = edit.backspace(point.row(), point.col());
+            edited();
             return new PointRec(pos.row(), pos.col());
         }
 
         @Override
         public List<Point> backspace(List<Point> points) {
+            version++;
             var pos = edit.backspace(points.stream()
                     .map(p -> new TextEdit.Pos(p.row(), p.col())).toList());
+            edited();
             return pos.stream().map(p -> (Point) new PointRec(p.row(), p.col())).toList();
         }
 
         @Override
         public Point replace(Point start, Point end, String text) {
+            version++;
             var pos = edit.replace(start.row(), start.col(), end.row(), end.col(), text);
+            edited();
             return new PointRec(pos.row(), pos.col());
         }
 
+        /**
+         * Replace the ranges with the text.
+         * <p>
+         * Each range is replaced by an edit of its own, from the last range to the first
+         * so that the preceding ranges keep their positions. The edits are grouped into
+         * a single undo unit.
+         * </p>
+         * @param ranges the ranges
+         * @param text the text
+         * @return the positions after the replaced text, in ascending order
+         */
         @Override
         public List<Point> replace(List<Range> ranges, String text) {
-            // TODO transaction replace
-            return ranges.stream().sorted(Comparator.reverseOrder())
-                    .map(range -> edit.replace(
-                            range.min().row(), range.min().col(),
-                            range.max().row(), range.max().col(),
-                            text))
-                    .map(pos -> new PointRec(pos.row(), pos.col()))
-                    .map(Point.class::cast)
-                    .toList();
+            if (ranges.isEmpty()) return List.of();
+            version++;
+            List<Range> sorted = ranges.stream().sorted().toList();
+
+            int textRows = 0;
+            int textTail = text.length();
+            for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+                textRows++;
+                textTail = text.length() - i - 1;
+            }
+
+            // clamp the overlapping ranges, and compute the positions after all the edits
+            List<Range> targets = new ArrayList<>(sorted.size());
+            List<Point> points = new ArrayList<>(sorted.size());
+            Point prev = sorted.getFirst().min();
+            int rowDelta = 0, colDelta = 0, colRow = -1;
+            for (Range range : sorted) {
+                Point min = range.min().compareTo(prev) < 0 ? prev : range.min();
+                Point max = range.max().compareTo(min) < 0 ? min : range.max();
+                targets.add(new Range(min, max));
+                int row = min.row() + rowDelta;
+                int col = (min.row() == colRow) ? min.col() + colDelta : min.col();
+                Point point = (textRows > 0)
+                        ? new PointRec(row + textRows, textTail)
+                        : new PointRec(row, col + text.length());
+                points.add(point);
+                rowDelta = point.row() - max.row();
+                colDelta = point.col() - max.col();
+                colRow = max.row();
+                prev = max;
+            }
+
+            edit.flush();
+            for (int i = targets.size() - 1; i >= 0; i--) {
+                Range range = targets.get(i);
+                edit.replace(range.min().row(), range.min().col(), range.max().row(), range.max().col(), text);
+                edit.flush();
+            }
+            redoUnits.clear();
+            undoUnits.push(new Unit(targets.size(), points));
+            return points;
+        }
+
+        /**
+         * Record the edit just made as an undo unit, if the units are being recorded.
+         * The units are recorded from a grouped edit until the recorded units run out,
+         * and the edit is flushed so that it makes an undo record of its own.
+         */
+        private void edited() {
+            redoUnits.clear();
+            if (!undoUnits.isEmpty()) {
+                edit.flush();
+                undoUnits.push(Unit.SINGLE);
+            }
         }
 
         @Override
         public List<Point> undo() {
-            return edit.undo().stream().map(p -> Point.of(p.row(), p.col())).toList();
+            version++;
+            boolean recording = !undoUnits.isEmpty() || !redoUnits.isEmpty();
+            Unit unit = undoUnits.isEmpty() ? Unit.SINGLE : undoUnits.pop();
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < unit.edits(); i++) {
+                edit.undo().forEach(p -> points.add(Point.of(p.row(), p.col())));
+            }
+            if (recording) redoUnits.push(unit);
+            return points;
         }
 
         @Override
         public List<Point> redo() {
-            return edit.redo().stream().map(p -> Point.of(p.row(), p.col())).toList();
+            version++;
+            boolean recording = !undoUnits.isEmpty() || !redoUnits.isEmpty();
+            Unit unit = redoUnits.isEmpty() ? Unit.SINGLE : redoUnits.pop();
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < unit.edits(); i++) {
+                edit.redo().forEach(p -> points.add(Point.of(p.row(), p.col())));
+            }
+            if (recording) undoUnits.push(unit);
+            return (unit.points() == null) ? points : unit.points();
         }
 
         @Override
@@ -191,6 +342,11 @@ public interface Content {
             edit.save(path);
         }
 
+        @Override
+        public boolean isReadOnly() {
+            return false;
+        }
+
         @Override
         public boolean isModified() {
             edit.flush();
@@ -199,12 +355,15 @@ public interface Content {
 
         @Override
         public Point insertFlush(Point point, String text) {
+            version++;
             flushes.add(new PointText(point, text));
             return new PointRec(point.row(), point.col() + text.length());
         }
 
         @Override
         public void clearFlush() {
+            if (flushes.isEmpty()) return;
+            version++;
             flushes.clear();
         }
 
@@ -216,7 +375,36 @@ public interface Content {
                     .toList();
         }
 
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public boolean sync() {
+            return false;
+        }
+
+        @Override
+        public double progress() {
+            return 1.0;
+        }
+
+        @Override
+        public boolean follow(boolean on) {
+            return false;
+        }
+
         record PointText(Point point, String text) {}
 
+        /**
+         * An undo unit.
+         * @param edits the number of the undo records of the unit
+         * @param points the positions after the edits of a grouped unit, {@code null} otherwise
+         */
+        record Unit(int edits, List<Point> points) {
+            static final Unit SINGLE = new Unit(1, null);
+        }
+
     }
 }
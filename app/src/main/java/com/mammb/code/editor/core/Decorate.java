@@ -15,15 +15,25 @@
  */
 package com.mammb.code.editor.core;
 
+import com.mammb.code.editor.core.syntax.LineState;
+import com.mammb.code.editor.core.syntax.LineStates;
 import com.mammb.code.editor.core.syntax.Syntax;
+import com.mammb.code.editor.core.text.Style;
 import com.mammb.code.editor.core.text.Style.StyleSpan;
 import com.mammb.code.editor.core.text.SubText;
 import com.mammb.code.editor.core.text.Text;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Decorate.
@@ -31,21 +41,87 @@ import java.util.Set;
  */
 public interface Decorate {
 
+    /**
+     * Get the style spans of the text.
+     * The returned list is shared and unmodifiable.
+     * @param text the text
+     * @return the style spans
+     */
     List<StyleSpan> apply(Text text);
-    void addHighlights(int row, StyleSpan span);
     void clear();
-    Set<Integer> highlightsRows();
 
-    static Decorate of(Syntax syntax) {
-        return new DecorateImpl(syntax);
+    /**
+     * Get the highlights of the found matches.
+     * @return the highlights
+     */
+    Highlights highlights();
+
+    /**
+     * Invalidate the syntax highlights of the edited rows.
+     * @param startRow the start row of the edited rows, after the edit
+     * @param endRow the end row(exclusive) of the edited rows, after the edit
+     */
+    void invalidate(int startRow, int endRow);
+
+    /**
+     * Tokenize the rows in the background, settling the lexer states up to them.
+     * The row texts are read on the calling thread.
+     * @param startRow the start row
+     * @param endRow the end row(exclusive)
+     */
+    void prefetch(int startRow, int endRow);
+
+    /**
+     * Get the progress of the background lexing.
+     * @return the progress ratio, {@code 1.0} if nothing is in progress
+     */
+    double progress();
+
+    static Decorate of(Syntax syntax, Content content) {
+        var executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), Thread.ofVirtual().name("decorate").factory());
+        executor.allowCoreThreadTimeOut(true);
+        return new DecorateImpl(syntax, content, executor);
     }
 
     class DecorateImpl implements Decorate {
+        /** The maximum number of rows in the syntax highlight cache. */
+        private static final int CACHE_LIMIT = 4096;
+        /** The maximum number of rows handed to the lexer to settle at a prefetch. */
+        private static final int SETTLE_LIMIT = 4096;
         private final Syntax syntax;
-        private final Map<Integer, List<StyleSpan>> highlights = new HashMap<>();
+        private final Content content;
+        private final Highlights highlights = new Highlights(new Style.BgColor("#FDD835"));
+        /** The syntax highlights, confined to the editing thread. */
+        private final Map<Integer, Highlight> cache = new HashMap<>();
+        /** The highlights lexed on the lexer thread, to be put in the cache on the editing thread. */
+        private final Queue<Lexed> lexed = new ConcurrentLinkedQueue<>();
+        /** The lexer states, confined to the lexer thread. */
+        private final LineStates states = new LineStates();
+        /** The scratch buffer of lexing, confined to the lexer thread. */
+        private final List<StyleSpan> scratch = new ArrayList<>();
+        /** The lexer thread, which applies the tasks in the order they are queued. */
+        private final Executor executor;
+        /** The number of queued tasks not yet applied. */
+        private final AtomicInteger queued = new AtomicInteger();
+        private volatile long version = 0;
+        private int rows;
+        /** The end row(exclusive) of the rows handed to the lexer to settle. */
+        private int fed = 0;
+        /** The end row(exclusive) of the rows to be settled. */
+        private int wanted = 0;
 
-        public DecorateImpl(Syntax syntax) {
+        /**
+         * Create a decorate.
+         * @param syntax the syntax
+         * @param content the content
+         * @param executor the executor of the lexer, which must run the tasks in the order they are queued
+         */
+        public DecorateImpl(Syntax syntax, Content content, Executor executor) {
             this.syntax = syntax;
+            this.content = content;
+            this.rows = content.rows();
+            this.executor = executor;
         }
 
         @Override
@@ -55,32 +131,201 @@ public interface Decorate {
                     : apply(text.row(), text.value());
         }
 
+        private List<StyleSpan> apply(SubText sub) {
+            List<StyleSpan> spans = null;
+            for (StyleSpan span : apply(sub.row(), sub.parent().value())) {
+                int start = Math.max(span.offset(), sub.fromIndex());
+                int end = Math.min(span.offset() + span.length(), sub.toIndex());
+                if (start >= end) continue;
+                if (spans == null) spans = new ArrayList<>();
+                spans.add(new StyleSpan(span.style(), start - sub.fromIndex(), end - start));
+            }
+            return (spans == null) ? List.of() : Collections.unmodifiableList(spans);
+        }
+
+        /**
+         * Get the style spans of the row.
+         * <p>
+         * The stored highlights and syntax spans are never modified. A row with only one of
+         * them gets the stored list as it is. A row with both gets a new merged list, as the
+         * spans of a frame are kept until the next frame is compared against them, so a
+         * buffer reused by every frame would change the spans of the previous frame.
+         * </p>
+         */
+        private List<StyleSpan> apply(int row, String text) {
+            List<StyleSpan> found = highlights.spans(row);
+            List<StyleSpan> syntaxSpans = syntaxSpans(row, text);
+            if (found.isEmpty()) return syntaxSpans;
+            if (syntaxSpans.isEmpty()) return found;
+            List<StyleSpan> spans = new ArrayList<>(found.size() + syntaxSpans.size());
+            spans.addAll(found);
+            spans.addAll(syntaxSpans);
+            return Collections.unmodifiableList(spans);
+        }
+
+        /**
+         * Get the syntax spans of the row.
+         * The row is drawn as plain text until the lexer publishes them.
+         */
+        private List<StyleSpan> syntaxSpans(int row, String text) {
+            if (syntax instanceof Syntax.PassThrough) return List.of();
+            if (!lexed.isEmpty()) drain();
+            Highlight highlight = cache.get(row);
+            return (highlight != null && highlight.text().equals(text))
+                    ? highlight.spans()
+                    : List.of();
+        }
+
         @Override
-        public void addHighlights(int row, StyleSpan span) {
-            highlights.computeIfAbsent(row,
-                    r -> new ArrayList<>()).add(span);
+        public void invalidate(int startRow, int endRow) {
+            int delta = content.rows() - rows;
+            int oldEndRow = Math.max(startRow, endRow - delta);
+            rows = content.rows();
+            drain();
+            version++;
+            fed = Math.min(fed, startRow);
+            submit(() -> states.edit(startRow, oldEndRow, endRow));
+            List<Map.Entry<Integer, Highlight>> shifted = new ArrayList<>();
+            var it = cache.entrySet().iterator();
+            while (it.hasNext()) {
+                var entry = it.next();
+                int row = entry.getKey();
+                if (row >= oldEndRow) {
+                    if (delta != 0) {
+                        shifted.add(Map.entry(row + delta, entry.getValue()));
+                        it.remove();
+                    }
+                } else if (row >= startRow) {
+                    it.remove();
+                }
+            }
+            shifted.forEach(e -> cache.put(e.getKey(), e.getValue()));
         }
 
-        private List<StyleSpan> apply(SubText sub) {
-            List<StyleSpan> spans = new ArrayList<>();
-            for (StyleSpan span : apply(sub.row(), sub.parent().value())) {
-                if (span.offset() + span.length() <= sub.fromIndex() ||
-                        sub.toIndex() <= span.offset()) {
-                    continue;
+        @Override
+        public void prefetch(int startRow, int endRow) {
+            if (syntax instanceof Syntax.PassThrough) return;
+            drain();
+            long v = version;
+            wanted = Math.max(Math.min(wanted, rows), endRow);
+            if (fed < wanted) {
+                int from = fed;
+                int to = Math.min(wanted, from + SETTLE_LIMIT);
+                List<String> texts = new ArrayList<>(to - from);
+                List<Highlight> cached = new ArrayList<>(to - from);
+                for (int row = from; row < to; row++) {
+                    texts.add(content.getText(row));
+                    cached.add(cache.get(row));
+                }
+                fed = to;
+                submit(() -> settle(v, from, texts, cached));
+            }
+            List<Integer> rows = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            for (int row = startRow; row < endRow; row++) {
+                if (!cache.containsKey(row)) {
+                    rows.add(row);
+                    texts.add(content.getText(row));
+                }
+            }
+            if (cache.size() > CACHE_LIMIT) {
+                cache.keySet().removeIf(r -> r < startRow - CACHE_LIMIT / 2 || r >= endRow + CACHE_LIMIT / 2);
+            }
+            if (!rows.isEmpty()) {
+                submit(() -> lex(v, rows, texts));
+            }
+        }
+
+        @Override
+        public double progress() {
+            if (syntax instanceof Syntax.PassThrough) return 1.0;
+            if (queued.get() == 0 && fed >= Math.min(wanted, rows)) return 1.0;
+            return Math.min(0.99, (double) fed / Math.max(1, wanted));
+        }
+
+        /**
+         * Put the highlights lexed so far in the cache, on the editing thread.
+         * The highlights lexed at an older version are dropped, as the rows have been
+         * numbered again since.
+         */
+        private void drain() {
+            Lexed l;
+            while ((l = lexed.poll()) != null) {
+                if (l.version() == version) {
+                    cache.put(l.row(), l.highlight());
                 }
-                spans.add(new StyleSpan(
-                        span.style(),
-                        Math.max(0, span.offset() - sub.fromIndex()),
-                        span.length()
-                ));
             }
-            return spans;
         }
 
-        private List<StyleSpan> apply(int row, String text) {
-            List<StyleSpan> spans = highlights.getOrDefault(row, new ArrayList<>());
-            spans.addAll(syntax.apply(row, text));
-            return spans;
+        private void submit(Runnable task) {
+            queued.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    queued.decrementAndGet();
+                }
+            });
+        }
+
+        /**
+         * Settle the lexer states of the rows, on the lexer thread.
+         * @param v the version at which the texts are read
+         * @param startRow the start row of the texts
+         * @param texts the row texts
+         * @param cached the highlights cached for the rows when the texts are read
+         */
+        private void settle(long v, int startRow, List<String> texts, List<Highlight> cached) {
+            for (int i = 0; i < texts.size(); i++) {
+                int row = startRow + i;
+                if (row < states.valid()) continue;
+                LineState start = states.startOf(row);
+                String text = texts.get(i);
+                Highlight highlight = cached.get(i);
+                if (highlight != null && highlight.start().equals(start) && highlight.text().equals(text)) {
+                    states.put(row, highlight.end());
+                } else {
+                    highlight = tokenize(start, text);
+                    publish(v, row, highlight);
+                    states.put(row, highlight.end());
+                }
+            }
+        }
+
+        /**
+         * Tokenize the rows, on the lexer thread.
+         * The rows beyond the settled rows are lexed from the initial state for now,
+         * and lexed again when the states settle up to them.
+         * @param v the version at which the texts are read
+         * @param rows the rows
+         * @param texts the row texts
+         */
+        private void lex(long v, List<Integer> rows, List<String> texts) {
+            for (int i = 0; i < rows.size(); i++) {
+                if (v != version) return;
+                int row = rows.get(i);
+                LineState start = (row <= states.valid()) ? states.startOf(row) : LineState.NONE;
+                Highlight highlight = tokenize(start, texts.get(i));
+                publish(v, row, highlight);
+                if (row == states.valid()) {
+                    states.put(row, highlight.end());
+                }
+            }
+        }
+
+        /**
+         * Hand the highlight to the editing thread, on the lexer thread.
+         */
+        private void publish(long v, int row, Highlight highlight) {
+            if (v != version) return;
+            lexed.add(new Lexed(v, row, highlight));
+        }
+
+        private Highlight tokenize(LineState start, String text) {
+            LineState end = syntax.apply(start, text, scratch);
+            List<StyleSpan> spans = List.copyOf(scratch);
+            scratch.clear();
+            return new Highlight(text, start, spans, end);
         }
 
         @Override
@@ -89,9 +334,26 @@ public interface Decorate {
         }
 
         @Override
-        public Set<Integer> highlightsRows() {
-            return highlights.keySet();
+        public Highlights highlights() {
+            return highlights;
         }
 
+        /**
+         * The syntax highlight of a row.
+         * @param text the row text
+         * @param start the lexer state at the start of the row
+         * @param spans the style spans
+         * @param end the lexer state at the end of the row
+         */
+        record Highlight(String text, LineState start, List<StyleSpan> spans, LineState end) { }
+
+        /**
+         * The highlight of a row lexed on the lexer thread.
+         * @param version the version at which the row text is read
+         * @param row the row
+         * @param highlight the highlight
+         */
+        record Lexed(long version, int row, Highlight highlight) { }
+
     }
 }
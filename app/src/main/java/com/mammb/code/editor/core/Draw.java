@@ -24,7 +24,9 @@ import java.util.List;
  */
 public interface Draw {
     void clear();
+    void clear(double x, double y, double w, double h);
     void text(String text, double x, double y, double w, List<Style> styles);
+    void flush();
     void caret(double x, double y);
     void select(double x1, double y1, double x2, double y2, double l, double r);
     void underline(double x1, double y1, double x2, double y2);
@@ -36,14 +36,30 @@ public interface EditorModel {
     }
 
     static EditorModel of(Path path, FontMetrics fm, ScreenScroll scroll) {
+        return of(Content.of(path), fm, scroll);
+    }
+
+    static EditorModel of(Content content, FontMetrics fm, ScreenScroll scroll) {
         return new TextEditorModel(
-                Content.of(path),
+                content,
                 fm,
-                Syntax.of(extension(path)),
+                content.isReadOnly()
+                        ? Syntax.of("")
+                        : Syntax.of(content.path().map(EditorModel::extension).orElse("")),
                 scroll);
     }
 
     void draw(Draw draw);
+    /**
+     * Get the progress of the background work, loading the content, finding or lexing.
+     * @return the progress ratio, {@code 1.0} if nothing is in progress
+     */
+    double progress();
+    /**
+     * Get the number of lines repainted in the last frame.
+     * @return the number of repainted lines
+     */
+    int repaintedLines();
     void setSize(double width, double height);
 
     void scrollNext(int delta);
@@ -75,17 +91,36 @@ public interface EditorModel {
     void copyToClipboard(Clipboard clipboard);
     void cutToClipboard(Clipboard clipboard);
     boolean isModified();
+    /**
+     * Get whether the content is read-only.
+     * Edits are ignored on read-only content.
+     * @return {@code true} if the content is read-only
+     */
+    boolean isReadOnly();
     Optional<Path> path();
     void save(Path path);
     void escape();
     void wrap();
+    /**
+     * Toggle following the file, to show the rows appended to it.
+     * The screen scrolls with the appended rows while the last row is on the screen.
+     */
+    void follow();
+    boolean isFollowing();
 
     Optional<Loc> imeOn();
     void imeOff();
     boolean isImeOn();
     void inputImeComposed(String text);
 
-    void findAll(String text);
+    /**
+     * Find all the matches of the text, and highlight them.
+     * @param text the text to be found
+     * @param regex whether the text is a regular expression
+     * @param ignoreCase whether to ignore case
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    void findAll(String text, boolean regex, boolean ignoreCase);
 
     private static String extension(Path path) {
         return Optional.of(path.getFileName().toString())
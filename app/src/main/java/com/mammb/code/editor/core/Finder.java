@@ -0,0 +1,335 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The finder.
+ * Finds all matches of a query by chunks of rows, starting from the chunk around
+ * a row and spreading outward, and delivers the found in batches.
+ * The text of a chunk is read at once, and the query scans it as a whole.
+ * <p>
+ * The chunks are searched in parallel by the executor. Read-only content is read by
+ * the searching threads. Any other content is not thread safe, so the texts of its chunks
+ * are read on the editing thread, a few chunks at each {@link #poll}, and searched as
+ * snapshots. An edit restarts the find, as the found rows and the chunks no longer match
+ * the content. The rows appended on sync only extend the find to them.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+public interface Finder {
+
+    /**
+     * Start finding the query, cancelling the previous find.
+     * @param query the query
+     * @param row the row around which to find first
+     */
+    void find(Query query, int row);
+
+    /**
+     * Cancel the current find.
+     */
+    void cancel();
+
+    /**
+     * Restart the current find over the edited content, if finding.
+     * @param row the row around which to find first
+     * @return {@code true} if the find has been restarted, and the found so far are stale
+     */
+    boolean restart(int row);
+
+    /**
+     * Extend the find to the rows appended to the content on sync, unless cancelled.
+     * The matches in the rows searched so far are kept.
+     */
+    void extend();
+
+    /**
+     * Deliver the found so far to the consumer.
+     * @param consumer the consumer of the found
+     * @return {@code true} if anything has been delivered
+     */
+    boolean poll(Found consumer);
+
+    /**
+     * Get the progress of the current find.
+     * @return the ratio of the searched chunks, {@code 1.0} if not finding
+     */
+    double progress();
+
+    static Finder of(Content content) {
+        return new FinderImpl(content, task -> Thread.ofVirtual().name("finder").start(task));
+    }
+
+    /**
+     * The consumer of the found.
+     */
+    interface Found {
+        /**
+         * Accept a batch of the found.
+         * @param packed the matches packed by {@link Highlights#pack}
+         * @param size the number of the matches
+         */
+        void accept(long[] packed, int size);
+    }
+
+    class FinderImpl implements Finder {
+        /** The number of rows in a chunk. */
+        private static final int CHUNK_SIZE = 2048;
+        /** The number of chunks of editable content read on the editing thread at a poll. */
+        private static final int FEED_CHUNKS = 4;
+
+        private final Content content;
+        private final Executor executor;
+        /** The searches in progress, of the find and of its extensions. */
+        private final List<Search> searches = new ArrayList<>();
+        /** The query of the current find, or {@code null} if cancelled. */
+        private Query query;
+        /** The last searched row. */
+        private int lastRow;
+        /** The length of the last searched row, when it is searched. */
+        private int lastLength;
+
+        /**
+         * Create a finder.
+         * @param content the content
+         * @param executor the executor of searching
+         */
+        public FinderImpl(Content content, Executor executor) {
+            this.content = content;
+            this.executor = executor;
+        }
+
+        @Override
+        public void find(Query query, int row) {
+            cancel();
+            this.query = query;
+            lastRow = content.rows() - 1;
+            lastLength = content.getText(lastRow).length();
+            start(new Search(content, query, row, 0, 0, lastRow, lastLength));
+        }
+
+        @Override
+        public boolean restart(int row) {
+            if (searches.isEmpty()) return false;
+            find(query, row);
+            return true;
+        }
+
+        @Override
+        public void extend() {
+            if (query == null) return;
+            int row = content.rows() - 1;
+            int length = content.getText(row).length();
+            if (row == lastRow && length == lastLength) return;
+            // search the last searched row again, for the matches running into the appended text
+            start(new Search(content, query, lastRow, lastRow, lastLength, row, length));
+            lastRow = row;
+            lastLength = length;
+        }
+
+        private void start(Search search) {
+            searches.add(search);
+            if (content.isReadOnly()) {
+                int n = Math.min(Runtime.getRuntime().availableProcessors(), search.order.length);
+                for (int i = 0; i < n; i++) {
+                    executor.execute(search::run);
+                }
+            } else {
+                // the chunk around the row first, the rest at the following polls
+                search.feed(executor, 1);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            searches.forEach(s -> s.cancelled = true);
+            searches.clear();
+            query = null;
+        }
+
+        @Override
+        public boolean poll(Found consumer) {
+            boolean delivered = false;
+            for (Iterator<Search> it = searches.iterator(); it.hasNext(); ) {
+                Search s = it.next();
+                if (!content.isReadOnly()) {
+                    s.feed(executor, FEED_CHUNKS);
+                }
+                Batch batch;
+                while ((batch = s.batches.poll()) != null) {
+                    consumer.accept(batch.packed, batch.size);
+                    delivered = true;
+                }
+                if (s.done.get() == s.order.length && s.batches.isEmpty()) {
+                    it.remove();
+                }
+            }
+            return delivered;
+        }
+
+        @Override
+        public double progress() {
+            int done = 0, chunks = 0;
+            for (Search s : searches) {
+                done += s.done.get();
+                chunks += s.order.length;
+            }
+            return (chunks == 0) ? 1.0 : (double) done / chunks;
+        }
+
+        /**
+         * A search over the chunks of a range of rows.
+         */
+        private static class Search {
+            private final Content content;
+            private final Query query;
+            /** The first row of the range. */
+            private final int startRow;
+            /** The length of the first row searched before, the matches ending in it are skipped. */
+            private final int skip;
+            /** The last row of the range. */
+            private final int endRow;
+            /** The length of the last row to search. */
+            private final int endLength;
+            /** The chunk indexes in the order of search. */
+            private final int[] order;
+            /** The index of the next chunk in the order. */
+            private final AtomicInteger next = new AtomicInteger();
+            /** The number of searched chunks. */
+            private final AtomicInteger done = new AtomicInteger();
+            private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+            private volatile boolean cancelled = false;
+
+            Search(Content content, Query query, int row, int startRow, int skip, int endRow, int endLength) {
+                this.content = content;
+                this.query = query;
+                this.startRow = startRow;
+                this.skip = skip;
+                this.endRow = endRow;
+                this.endLength = endLength;
+                int chunks = (endRow - startRow) / CHUNK_SIZE + 1;
+                int center = Math.clamp((row - startRow) / CHUNK_SIZE, 0, chunks - 1);
+                this.order = new int[chunks];
+                for (int i = 0, k = 0; i < chunks; k++) {
+                    int c = (k % 2 == 0) ? center + k / 2 : center - (k + 1) / 2;
+                    if (c >= 0 && c < chunks) {
+                        order[i++] = c;
+                    }
+                }
+            }
+
+            /**
+             * Search the chunks, reading their texts on the calling thread.
+             */
+            void run() {
+                for (int i = next.getAndIncrement(); i < order.length && !cancelled; i = next.getAndIncrement()) {
+                    search(order[i], chunkText(order[i]));
+                }
+            }
+
+            /**
+             * Read the texts of the next chunks on the calling thread, and search them by the executor.
+             * @param executor the executor
+             * @param n the maximum number of chunks
+             */
+            void feed(Executor executor, int n) {
+                for (int k = 0; k < n && !cancelled; k++) {
+                    int i = next.getAndIncrement();
+                    if (i >= order.length) return;
+                    int c = order[i];
+                    String text = chunkText(c);
+                    executor.execute(() -> search(c, text));
+                }
+            }
+
+            private void search(int chunk, String text) {
+                if (!cancelled) {
+                    Batch batch = new Batch(startRow + chunk * CHUNK_SIZE, text, (chunk == 0) ? skip : 0);
+                    query.findAll(text, batch);
+                    if (batch.size > 0 && !cancelled) {
+                        batches.add(batch);
+                    }
+                }
+                done.incrementAndGet();
+            }
+
+            private String chunkText(int chunk) {
+                int start = startRow + chunk * CHUNK_SIZE;
+                int end = start + CHUNK_SIZE;
+                return content.getText(Point.of(start, 0), (end <= endRow)
+                        ? Point.of(end, 0)
+                        : Point.of(endRow, endLength));
+            }
+        }
+
+        /**
+         * The found positions in a chunk.
+         * Maps the matches in the text of the chunk to the rows, which only go forward.
+         */
+        private static class Batch implements Query.Match {
+            private final String text;
+            /** The end index up to which the matches have been found before. */
+            private final int skip;
+            private long[] packed = new long[16];
+            private int size = 0;
+            /** The current row. */
+            private int row;
+            /** The start index of the current row in the text. */
+            private int rowStart = 0;
+            /** The start index of the next row in the text. */
+            private int rowEnd;
+
+            Batch(int row, String text, int skip) {
+                this.text = text;
+                this.skip = skip;
+                this.row = row;
+                this.rowEnd = nextRow(0);
+            }
+
+            @Override
+            public void accept(int start, int end) {
+                if (end <= skip) return;
+                while (start >= rowEnd) {
+                    row++;
+                    rowStart = rowEnd;
+                    rowEnd = nextRow(rowEnd);
+                }
+                long p = Highlights.pack(row, start - rowStart, Math.min(end, rowEnd) - start);
+                if (p < 0) return;
+                if (size == packed.length) {
+                    packed = Arrays.copyOf(packed, size * 2);
+                }
+                packed[size++] = p;
+            }
+
+            private int nextRow(int index) {
+                int i = text.indexOf('\n', index);
+                return (i < 0) ? text.length() : i + 1;
+            }
+        }
+    }
+
+}
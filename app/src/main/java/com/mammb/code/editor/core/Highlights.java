@@ -0,0 +1,196 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.text.Style;
+import com.mammb.code.editor.core.text.Style.StyleSpan;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The highlights of the found matches.
+ * <p>
+ * A match is packed into a long, the row in the high 31 bits, the column in the next
+ * 21 bits and the length in the low 12 bits. Matches are held in sorted runs of disjoint
+ * rows, and the style spans are materialized only for the rows asked for.
+ * The number of matches by buckets of rows is kept as a density map.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+public class Highlights {
+
+    /** The maximum number of buckets of the density map. */
+    private static final int BUCKETS = 1024;
+    private static final int COL_BITS = 21;
+    private static final int LENGTH_BITS = 12;
+
+    private final Style style;
+    /** The sorted runs of matches, keyed by the first row of the run. */
+    private final TreeMap<Integer, long[]> runs = new TreeMap<>();
+    /** The number of matches by bucket. */
+    private final int[] density = new int[BUCKETS];
+    /** The shift from a row to its bucket. */
+    private int shift = 0;
+    private int size = 0;
+
+    public Highlights(Style style) {
+        this.style = style;
+    }
+
+    /**
+     * Pack a match.
+     * @param row the row
+     * @param col the column, less than 2^21
+     * @param length the length, truncated to 4095
+     * @return the packed match, or {@code -1} if the column is out of range
+     */
+    public static long pack(int row, int col, int length) {
+        if (col >= 1 << COL_BITS) return -1;
+        return (long) row << (COL_BITS + LENGTH_BITS)
+                | (long) col << LENGTH_BITS
+                | Math.min(length, (1 << LENGTH_BITS) - 1);
+    }
+
+    private static int row(long packed) {
+        return (int) (packed >>> (COL_BITS + LENGTH_BITS));
+    }
+
+    private static int col(long packed) {
+        return (int) (packed >>> LENGTH_BITS) & ((1 << COL_BITS) - 1);
+    }
+
+    private static int length(long packed) {
+        return (int) packed & ((1 << LENGTH_BITS) - 1);
+    }
+
+    /**
+     * Add the matches.
+     * @param packed the packed matches
+     * @param n the number of the matches
+     */
+    public void add(long[] packed, int n) {
+        if (n <= 0) return;
+        long[] run = Arrays.copyOf(packed, n);
+        Arrays.sort(run);
+        for (long p : run) {
+            count(row(p));
+        }
+        size += n;
+        int first = row(run[0]);
+        int last = row(run[n - 1]);
+        Integer from = runs.floorKey(first);
+        var overlaps = runs.subMap((from == null) ? first : from, true, last, true);
+        for (var it = overlaps.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, long[]> entry = it.next();
+            long[] other = entry.getValue();
+            if (row(other[other.length - 1]) < first) continue;
+            run = merge(run, other);
+            it.remove();
+        }
+        runs.put(row(run[0]), run);
+    }
+
+    private static long[] merge(long[] a, long[] b) {
+        long[] ret = new long[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            ret[k++] = (a[i] <= b[j]) ? a[i++] : b[j++];
+        }
+        while (i < a.length) ret[k++] = a[i++];
+        while (j < b.length) ret[k++] = b[j++];
+        return ret;
+    }
+
+    private void count(int row) {
+        while ((row >>> shift) >= BUCKETS) {
+            // widen the buckets by folding pairs
+            for (int i = 0; i < BUCKETS / 2; i++) {
+                density[i] = density[2 * i] + density[2 * i + 1];
+            }
+            Arrays.fill(density, BUCKETS / 2, BUCKETS, 0);
+            shift++;
+        }
+        density[row >>> shift]++;
+    }
+
+    /**
+     * Get the style spans of the matches in the row.
+     * @param row the row
+     * @return the unmodifiable style spans
+     */
+    public List<StyleSpan> spans(int row) {
+        var entry = runs.floorEntry(row);
+        if (entry == null) return List.of();
+        long[] run = entry.getValue();
+        int i = Arrays.binarySearch(run, (long) row << (COL_BITS + LENGTH_BITS));
+        if (i < 0) i = -i - 1;
+        if (i >= run.length || row(run[i]) != row) return List.of();
+        List<StyleSpan> spans = new ArrayList<>();
+        for (; i < run.length && row(run[i]) == row; i++) {
+            spans.add(new StyleSpan(style, col(run[i]), length(run[i])));
+        }
+        return Collections.unmodifiableList(spans);
+    }
+
+    /**
+     * Clear all the matches.
+     */
+    public void clear() {
+        runs.clear();
+        Arrays.fill(density, 0);
+        shift = 0;
+        size = 0;
+    }
+
+    /**
+     * Get the number of matches.
+     * @return the number of matches
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of buckets of the density map.
+     * @return the number of buckets
+     */
+    public int buckets() {
+        return BUCKETS;
+    }
+
+    /**
+     * Get the number of matches in the bucket.
+     * @param bucket the bucket
+     * @return the number of matches
+     */
+    public int density(int bucket) {
+        return density[bucket];
+    }
+
+    /**
+     * Get the first row of the bucket.
+     * @param bucket the bucket
+     * @return the first row
+     */
+    public int bucketRow(int bucket) {
+        return bucket << shift;
+    }
+
+}
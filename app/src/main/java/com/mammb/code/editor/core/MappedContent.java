@@ -0,0 +1,456 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.Caret.Range;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The read-only content of a large file.
+ * <p>
+ * The file is memory-mapped, and the rows are indexed in the background by a sparse
+ * index holding the offset of every {@value #PAGE_SIZE}th row. Rows are decoded by pages
+ * between two checkpoints of the index, and a bounded number of pages is cached, so the
+ * heap used does not depend on the size of the file beyond the sparse index.
+ * The rows indexed so far are served at once, and become visible on {@link #sync()}.
+ * When following, the bytes appended to the file are mapped and indexed as they are written.
+ * The file is decoded as UTF-8. The rows can be read from any thread.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+class MappedContent implements Content {
+
+    /** The size of a file from which it is offered to be opened as mapped content. */
+    static final long LARGE_FILE_SIZE = 256L * 1024 * 1024;
+    /** The size of a mapped region. */
+    private static final int REGION_SIZE = 1 << 30;
+    /** The number of rows in a page. */
+    private static final int PAGE_SIZE = 128;
+    /** The number of cached pages. */
+    private static final int PAGE_CACHE_SIZE = 64;
+    /** The interval of polling the size of the followed file, in milliseconds. */
+    private static final long FOLLOW_INTERVAL = 250;
+
+    private final Path path;
+    /** The executor of indexing and following the file. */
+    private final Executor executor;
+    /** The cached pages, which also guards the visible rows when they change. */
+    private final Map<Integer, Page> pages;
+
+    /** The size of the mapped file. */
+    private volatile long size = 0;
+    /** The mapped regions of the file. */
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    /** The start offsets of every {@value #PAGE_SIZE}th row, written by the indexer. */
+    private volatile long[] checkpoints = new long[1024];
+    /** The number of indexed rows, published by the indexer. */
+    private volatile int indexed = 1;
+    /** The number of bytes scanned by the indexer. */
+    private volatile long scanned = 0;
+    /** Whether to follow the bytes appended to the file. */
+    private volatile boolean following = false;
+    /** Whether the file is being polled by the executor. */
+    private final AtomicBoolean polling = new AtomicBoolean();
+    /** The number of visible rows. */
+    private volatile int rows = 1;
+    /** The end offset of the visible rows. */
+    private volatile long end = 0;
+    /** The generation of the visible rows, incremented when they change on {@link #sync()}. */
+    private long generation = 0;
+
+    MappedContent(Path path) {
+        this(path, task -> Thread.ofVirtual().name("mapped-" + path.getFileName()).start(task));
+    }
+
+    /**
+     * Create the mapped content.
+     * @param path the path of the file
+     * @param executor the executor of indexing and following the file
+     */
+    MappedContent(Path path, Executor executor) {
+        this.path = path;
+        this.executor = executor;
+        this.pages = new LinkedHashMap<>(PAGE_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                return size() > PAGE_CACHE_SIZE;
+            }
+        };
+        try {
+            map();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        executor.execute(this::index);
+    }
+
+    /**
+     * Map the bytes of the file that are not mapped yet.
+     * The full regions mapped before are kept as they are.
+     * @return {@code false} if the file has been truncated
+     */
+    private boolean map() throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long newSize = ch.size();
+            if (newSize < size) return false;
+            if (newSize == size) return true;
+            MappedByteBuffer[] rs = Arrays.copyOf(regions, (int) ((newSize + REGION_SIZE - 1) / REGION_SIZE));
+            for (int i = (int) (size / REGION_SIZE); i < rs.length; i++) {
+                long pos = (long) i * REGION_SIZE;
+                rs[i] = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(REGION_SIZE, newSize - pos));
+            }
+            regions = rs;
+            size = newSize;
+            return true;
+        }
+    }
+
+    /**
+     * Index the rows of the bytes mapped and not scanned yet.
+     */
+    private synchronized void index() {
+        byte[] buf = new byte[64 * 1024];
+        MappedByteBuffer[] rs = regions;
+        long limit = size;
+        long pos = scanned;
+        int n = indexed;
+        while (pos < limit) {
+            MappedByteBuffer region = rs[(int) (pos / REGION_SIZE)];
+            int i = (int) (pos % REGION_SIZE);
+            int len = Math.min(buf.length, region.limit() - i);
+            region.get(i, buf, 0, len);
+            for (int j = 0; j < len; j++) {
+                if (buf[j] == '\n' && n++ % PAGE_SIZE == 0) {
+                    checkpoint(n / PAGE_SIZE, pos + j + 1);
+                }
+            }
+            pos += len;
+            indexed = n;
+            scanned = pos;
+        }
+    }
+
+    private void checkpoint(int page, long offset) {
+        long[] c = checkpoints;
+        if (page >= c.length) {
+            c = Arrays.copyOf(c, c.length * 2);
+        }
+        c[page] = offset;
+        checkpoints = c;
+    }
+
+    /**
+     * Map and index the bytes appended to the file.
+     * @return {@code false} if the file has been truncated
+     */
+    boolean grow() throws IOException {
+        if (!map()) return false;
+        index();
+        return true;
+    }
+
+    private void follow() {
+        try {
+            while (following) {
+                Thread.sleep(FOLLOW_INTERVAL);
+                if (!grow()) {
+                    // truncated or rotated, the rows read so far no longer match the file
+                    following = false;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            following = false;
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    @Override
+    public boolean follow(boolean on) {
+        following = on;
+        if (on && polling.compareAndSet(false, true)) {
+            executor.execute(this::follow);
+        }
+        return on;
+    }
+
+    @Override
+    public boolean sync() {
+        int n = indexed;
+        long s = scanned;
+        if (n == rows && s == end) return false;
+        synchronized (pages) {
+            // the last visible row may be extended
+            pages.remove((rows - 1) / PAGE_SIZE);
+            rows = n;
+            end = s;
+            generation++;
+        }
+        return true;
+    }
+
+    @Override
+    public double progress() {
+        long s = size;
+        return (s == 0) ? 1.0 : (double) scanned / s;
+    }
+
+    @Override
+    public String getText(int row) {
+        if (row < 0 || row >= rows) return "";
+        Page p = page(row / PAGE_SIZE);
+        return (row % PAGE_SIZE < p.texts().length) ? p.texts()[row % PAGE_SIZE] : "";
+    }
+
+    /**
+     * Get the page, decoding and caching it if the cached one is missing or stale.
+     * @param page the page index
+     * @return the page
+     */
+    Page page(int page) {
+        Page p;
+        long g;
+        int r;
+        long e;
+        synchronized (pages) {
+            p = pages.get(page);
+            g = generation;
+            r = rows;
+            e = end;
+        }
+        if (p == null || !p.isValidAt(g)) {
+            p = decode(page, g, r, e);
+            cache(page, p);
+        }
+        return p;
+    }
+
+    /**
+     * Cache the decoded page, unless the visible rows have changed since it was decoded.
+     * @param page the page index
+     * @param p the decoded page
+     */
+    void cache(int page, Page p) {
+        synchronized (pages) {
+            if (p.generation() == generation) pages.put(page, p);
+        }
+    }
+
+    private Page decode(int page, long generation, int rows, long end) {
+        String[] texts = new String[Math.min(PAGE_SIZE, rows - page * PAGE_SIZE)];
+        long start = checkpoints[page];
+        for (int i = 0; i < texts.length; i++) {
+            long next = nextRow(start, end);
+            texts[i] = decode(start, next);
+            start = next;
+        }
+        return new Page(texts, generation, (page + 1) * PAGE_SIZE >= rows);
+    }
+
+    /**
+     * A decoded page.
+     * A page holding the last visible row only lasts for the generation it was decoded at,
+     * as the row may be extended and rows may follow it.
+     * @param texts the row texts
+     * @param generation the generation of the visible rows the page was decoded at
+     * @param hasLastRow whether the page holds the last visible row
+     */
+    record Page(String[] texts, long generation, boolean hasLastRow) {
+        boolean isValidAt(long generation) {
+            return !hasLastRow || this.generation == generation;
+        }
+    }
+
+    private long nextRow(long pos, long limit) {
+        MappedByteBuffer[] rs = regions;
+        while (pos < limit) {
+            MappedByteBuffer region = rs[(int) (pos / REGION_SIZE)];
+            long base = pos - pos % REGION_SIZE;
+            int to = (int) Math.min(region.limit(), limit - base);
+            for (int i = (int) (pos - base); i < to; i++) {
+                if (region.get(i) == '\n') {
+                    return base + i + 1;
+                }
+            }
+            pos = base + to;
+        }
+        return limit;
+    }
+
+    private String decode(long start, long end) {
+        int len = Math.toIntExact(end - start);
+        byte[] bytes = new byte[len];
+        MappedByteBuffer[] rs = regions;
+        for (int read = 0; read < len; ) {
+            long pos = start + read;
+            MappedByteBuffer region = rs[(int) (pos / REGION_SIZE)];
+            int index = (int) (pos % REGION_SIZE);
+            int n = Math.min(len - read, region.limit() - index);
+            region.get(index, bytes, read, n);
+            read += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getText(Point start, Point end) {
+        int rows = this.rows;
+        if (start.row() >= rows) return "";
+        int endRow = Math.min(end.row(), rows - 1);
+        String text = decode(offset(start.row()), nextRow(offset(endRow), this.end));
+        int last = 0;
+        for (int row = start.row(); row < endRow; row++) {
+            last = text.indexOf('\n', last) + 1;
+        }
+        int to = (end.row() > endRow) ? text.length() : Math.min(text.length(), last + end.col());
+        return text.substring(Math.min(start.col(), to), to);
+    }
+
+    private long offset(int row) {
+        long pos = checkpoints[row / PAGE_SIZE];
+        for (int i = 0; i < row % PAGE_SIZE; i++) {
+            pos = nextRow(pos, end);
+        }
+        return pos;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public List<Point> findAll(String text) {
+        List<Point> founds = new ArrayList<>();
+        if (text.isEmpty()) return founds;
+        for (int row = 0; row < rows; row++) {
+            String line = getText(row);
+            for (int col = line.indexOf(text); col >= 0; col = line.indexOf(text, col + text.length())) {
+                founds.add(Point.of(row, col));
+            }
+        }
+        return founds;
+    }
+
+    @Override
+    public Optional<Path> path() {
+        return Optional.of(path);
+    }
+
+    @Override
+    public void save(Path path) {
+        if (this.path.equals(path)) return;
+        try {
+            Files.copy(this.path, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public boolean isModified() {
+        return false;
+    }
+
+    @Override
+    public long version() {
+        return 0;
+    }
+
+    // the content is read-only, edits leave it as it is
+
+    @Override
+    public Point insert(Point point, String text) {
+        return point;
+    }
+
+    @Override
+    public List<Point> insert(List<Point> points, String text) {
+        return points;
+    }
+
+    @Override
+    public String delete(Point point) {
+        return "";
+    }
+
+    @Override
+    public List<Point> delete(List<Point> points) {
+        return points;
+    }
+
+    @Override
+    public Point backspace(Point point) {
+        return point;
+    }
+
+    @Override
+    public List<Point> backspace(List<Point> points) {
+        return points;
+    }
+
+    @Override
+    public Point replace(Point start, Point end, String text) {
+        return end;
+    }
+
+    @Override
+    public List<Point> replace(List<Range> ranges, String text) {
+        return ranges.stream().map(Range::max).toList();
+    }
+
+    @Override
+    public List<Point> undo() {
+        return List.of();
+    }
+
+    @Override
+    public List<Point> redo() {
+        return List.of();
+    }
+
+    @Override
+    public Point insertFlush(Point point, String text) {
+        return point;
+    }
+
+    @Override
+    public void clearFlush() {
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled query of find.
+ * @author Naotsugu Kobayashi
+ */
+public interface Query {
+
+    /**
+     * Find all the matches in the text.
+     * @param text the text
+     * @param match the consumer of the matches, in ascending order
+     */
+    void findAll(CharSequence text, Match match);
+
+    /**
+     * Compile the query.
+     * @param text the text of the query
+     * @param regex whether the text is a regular expression
+     * @param ignoreCase whether to ignore case
+     * @return the query
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    static Query of(String text, boolean regex, boolean ignoreCase) {
+        return regex
+                ? new Regex(Pattern.compile(text, Pattern.MULTILINE |
+                        (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0)))
+                : new Literal(text, ignoreCase);
+    }
+
+    /**
+     * The consumer of a match.
+     */
+    interface Match {
+        void accept(int start, int end);
+    }
+
+    /**
+     * The literal query, matched by the Horspool algorithm.
+     * A case-sensitive query over a string is matched by {@link String#indexOf}, which is
+     * intrinsified and outruns the skip table.
+     */
+    class Literal implements Query {
+        private final String text;
+        private final char[] pattern;
+        private final boolean ignoreCase;
+        /** The shifts by the low byte of the character at the end of the window. */
+        private final int[] shifts = new int[256];
+
+        public Literal(String text, boolean ignoreCase) {
+            this.text = text;
+            this.ignoreCase = ignoreCase;
+            this.pattern = text.toCharArray();
+            int n = pattern.length;
+            for (int i = 0; i < n; i++) {
+                pattern[i] = fold(pattern[i]);
+            }
+            Arrays.fill(shifts, Math.max(1, n));
+            for (int i = 0; i < n - 1; i++) {
+                // characters sharing a low byte keep the smallest shift
+                shifts[pattern[i] & 0xFF] = n - 1 - i;
+            }
+        }
+
+        @Override
+        public void findAll(CharSequence text, Match match) {
+            int n = pattern.length;
+            if (n == 0) return;
+            if (!ignoreCase && text instanceof String string) {
+                for (int i = string.indexOf(this.text); i >= 0; i = string.indexOf(this.text, i + n)) {
+                    match.accept(i, i + n);
+                }
+                return;
+            }
+            int limit = text.length() - n;
+            for (int i = 0; i <= limit; ) {
+                int j = n - 1;
+                while (j >= 0 && fold(text.charAt(i + j)) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    match.accept(i, i + n);
+                    i += n;
+                } else {
+                    i += shifts[fold(text.charAt(i + n - 1)) & 0xFF];
+                }
+            }
+        }
+
+        private char fold(char ch) {
+            return ignoreCase ? Character.toLowerCase(Character.toUpperCase(ch)) : ch;
+        }
+    }
+
+    /**
+     * The regular expression query.
+     */
+    class Regex implements Query {
+        private final Pattern pattern;
+
+        public Regex(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public void findAll(CharSequence text, Match match) {
+            Matcher matcher = pattern.matcher(text);
+            while (matcher.find()) {
+                if (matcher.end() > matcher.start()) {
+                    match.accept(matcher.start(), matcher.end());
+                }
+            }
+        }
+    }
+
+}
@@ -30,9 +30,11 @@ interface ContentLayout extends LineLayout {
     void refresh(int line);
     void refreshAt(int startRow, int endRow);
     List<Text> texts(int startLine, int endLine);
+    List<Text> shiftRows(List<Text> texts, int delta);
     RowText rowText(int line);
     @Override RowText rowTextAt(int row);
     double standardCharWidth();
     Optional<Loc> loc(int row, int col, int rangeLineStart, int rangeLineEnd);
+    RowTextCache rowTextCache();
 
 }
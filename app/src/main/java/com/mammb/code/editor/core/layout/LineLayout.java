@@ -40,6 +40,27 @@ public interface LineLayout {
     default double xOnLayout(int line, int col) {
         return text(line).widthTo(col);
     }
+
+    /**
+     * Get the column on the row at the x position of the text of a line.
+     * @param text the text of the line
+     * @param x the x position
+     * @return the column
+     */
+    default int xToCol(Text text, double x) {
+        return text.indexTo(x);
+    }
+
+    /**
+     * Get the x position of the column on the text of a line.
+     * @param text the text of the line
+     * @param col the column on the row
+     * @return the x position
+     */
+    default double xOnLayout(Text text, int col) {
+        return text.widthTo(col);
+    }
+
     default double yOnLayout(int line) {
         return line * lineHeight();
     }
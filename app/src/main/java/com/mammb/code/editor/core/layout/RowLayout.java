@@ -32,14 +32,13 @@ public class RowLayout implements ContentLayout {
     private final double lineHeight;
     private final double standardCharWidth;
     private final Content content;
-    private final FontMetrics fm;
-
+    private final RowTextCache cache;
 
     public RowLayout(Content content, FontMetrics fm) {
         this.lineHeight = fm.getLineHeight();
         this.standardCharWidth = fm.getAdvance("0");
         this.content = content;
-        this.fm = fm;
+        this.cache = new RowTextCache(content, fm, 512);
     }
 
     public void setScreenWidth(double width) {
@@ -52,7 +51,7 @@ public class RowLayout implements ContentLayout {
 
     @Override
     public void refreshAt(int startRow, int endRow) {
-        // nothing to do
+        cache.refresh(startRow, endRow);
     }
 
     @Override
@@ -66,6 +65,13 @@ public class RowLayout implements ContentLayout {
                 .mapToObj(this::rowText).map(Text.class::cast).toList();
     }
 
+    @Override
+    public List<Text> shiftRows(List<Text> texts, int delta) {
+        return texts.stream()
+                .map(text -> RowText.of(text.row() + delta, (RowText) text))
+                .map(Text.class::cast).toList();
+    }
+
     @Override
     public RowText rowText(int line) {
         return rowTextAt(line);
@@ -73,7 +79,12 @@ public class RowLayout implements ContentLayout {
 
     @Override
     public RowText rowTextAt(int row) {
-        return RowText.of(row, content.getText(row), fm);
+        return cache.get(row);
+    }
+
+    @Override
+    public RowTextCache rowTextCache() {
+        return cache;
     }
 
     @Override
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.layout;
+
+import com.mammb.code.editor.core.Content;
+import com.mammb.code.editor.core.FontMetrics;
+import com.mammb.code.editor.core.text.RowText;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The LRU cache of measured row texts.
+ * <p>
+ * The cache follows the version of the content. Edits notified by {@link #refresh(int, int)}
+ * evict only the edited rows and re-number the rows below them, any other modification
+ * of the content discards the whole cache.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+public class RowTextCache {
+
+    private final Content content;
+    private final FontMetrics fm;
+    private final Map<Integer, RowText> map;
+    private long version;
+    private int rows;
+    private long hits = 0;
+    private long misses = 0;
+
+    RowTextCache(Content content, FontMetrics fm, int capacity) {
+        this.content = content;
+        this.fm = fm;
+        this.map = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, RowText> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.version = content.version();
+        this.rows = content.rows();
+    }
+
+    RowText get(int row) {
+        if (version != content.version()) {
+            clear();
+        }
+        RowText text = map.get(row);
+        if (text == null) {
+            misses++;
+            text = RowText.of(row, content.getText(row), fm);
+            map.put(row, text);
+        } else {
+            hits++;
+        }
+        return text;
+    }
+
+    /**
+     * Evict the edited rows.
+     * @param startRow the start row of the edited rows, the first row touched by the edit,
+     *                 so that the rows above it are numbered alike before and after the edit
+     * @param endRow the end row(exclusive) of the edited rows, after the edit
+     */
+    void refresh(int startRow, int endRow) {
+        int delta = content.rows() - rows;
+        int oldEndRow = Math.max(startRow, endRow - delta);
+        if (delta == 0 && oldEndRow - startRow <= map.size()) {
+            for (int row = startRow; row < oldEndRow; row++) {
+                map.remove(row);
+            }
+        } else {
+            List<RowText> shifted = new ArrayList<>();
+            var it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                var entry = it.next();
+                int row = entry.getKey();
+                if (row >= oldEndRow) {
+                    if (delta != 0) {
+                        shifted.add(RowText.of(row + delta, entry.getValue()));
+                        it.remove();
+                    }
+                } else if (row >= startRow) {
+                    it.remove();
+                }
+            }
+            shifted.forEach(text -> map.put(text.row(), text));
+        }
+        version = content.version();
+        rows = content.rows();
+    }
+
+    void clear() {
+        map.clear();
+        version = content.version();
+        rows = content.rows();
+    }
+
+    /**
+     * Get the number of cache hits.
+     * @return the number of cache hits
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of cache misses.
+     * @return the number of cache misses
+     */
+    public long misses() {
+        return misses;
+    }
+
+}
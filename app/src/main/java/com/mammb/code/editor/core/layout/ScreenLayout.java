@@ -46,6 +46,18 @@ public interface ScreenLayout extends LineLayout {
     int topLine();
     void applyScreenScroll(ScreenScroll screenScroll);
 
+    /**
+     * Get the number of row text cache hits.
+     * @return the number of row text cache hits
+     */
+    long cacheHits();
+
+    /**
+     * Get the number of row text cache misses.
+     * @return the number of row text cache misses
+     */
+    long cacheMisses();
+
     static ScreenLayout of(Content content, FontMetrics fm) {
         ContentLayout layout = new RowLayout(content, fm);
         return new BasicScreenLayout(layout);
@@ -61,6 +73,7 @@ public interface ScreenLayout extends LineLayout {
         private double xShift = 0;
         private double xMax = 0;
         private int topLine = 0;
+        private int rowSize = 0;
         private final List<Text> buffer = new ArrayList<>();
         private final ContentLayout layout;
 
@@ -93,6 +106,7 @@ public interface ScreenLayout extends LineLayout {
             if (delta == 0) return;
             if (Math.abs(delta) < screenLineSize() * 2 / 3) {
                 topLine = line;
+                int lineSize = layout.lineSize();
                 List<Text> texts;
                 if (delta > 0) {
                     // scroll next
@@ -105,6 +119,11 @@ public interface ScreenLayout extends LineLayout {
                     texts = layout.texts(line, line - delta);
                     buffer.addAll(0, texts);
                 }
+                if (lineSize != layout.lineSize()) {
+                    // the layout has re-measured the estimated lines
+                    fillBuffer();
+                    return;
+                }
                 texts.stream().mapToDouble(Text::width)
                         .filter(w -> w > xMax).max()
                         .ifPresent(w -> xMax = w);
@@ -122,7 +141,37 @@ public interface ScreenLayout extends LineLayout {
         @Override
         public void refreshBuffer(int startRow, int endRow) {
             layout.refreshAt(startRow, endRow);
-            fillBuffer();// TODO optimize
+            int delta = layout.rowSize() - rowSize;
+            int startLine = layout.rowToFirstLine(startRow);
+            if (buffer.isEmpty() || startLine < topLine) {
+                fillBuffer();
+                return;
+            }
+            rowSize = layout.rowSize();
+            int screenEnd = topLine + screenLineSize();
+            if (startLine >= screenEnd) {
+                return;
+            }
+
+            // rows [startRow, endRow) are the edited rows, they were [startRow, endRow - delta) before the edit
+            int from = 0;
+            while (from < buffer.size() && buffer.get(from).row() < startRow) from++;
+            int to = from;
+            while (to < buffer.size() && buffer.get(to).row() < endRow - delta) to++;
+
+            List<Text> tail = buffer.subList(to, buffer.size());
+            tail = (delta == 0) ? new ArrayList<>(tail) : layout.shiftRows(tail, delta);
+            buffer.subList(from, buffer.size()).clear();
+
+            List<Text> texts = layout.texts(topLine + from, Math.min(layout.rowToFirstLine(endRow), screenEnd));
+            buffer.addAll(texts);
+            buffer.addAll(tail.subList(0, Math.min(tail.size(), Math.max(0, screenEnd - topLine - buffer.size()))));
+            if (buffer.size() < screenLineSize()) {
+                buffer.addAll(layout.texts(topLine + buffer.size(), screenEnd));
+            }
+            texts.stream().mapToDouble(Text::width)
+                    .filter(w -> w > xMax).max()
+                    .ifPresent(w -> xMax = w);
         }
 
         @Override
@@ -210,6 +259,16 @@ public interface ScreenLayout extends LineLayout {
             return layout.xToCol(line, x);
         }
 
+        @Override
+        public int xToCol(Text text, double x) {
+            return layout.xToCol(text, x);
+        }
+
+        @Override
+        public double xOnLayout(Text text, int col) {
+            return layout.xOnLayout(text, col);
+        }
+
         @Override
         public int yToLineOnScreen(double y) {
             return Math.clamp(topLine + (int) (y / layout.lineHeight()), 0, lineSize() - 1);
@@ -257,7 +316,18 @@ public interface ScreenLayout extends LineLayout {
             scroll.horizontal(0, max, xShift, screenWidth * max / xMax);
         }
 
+        @Override
+        public long cacheHits() {
+            return layout.rowTextCache().hits();
+        }
+
+        @Override
+        public long cacheMisses() {
+            return layout.rowTextCache().misses();
+        }
+
         private void fillBuffer() {
+            rowSize = layout.rowSize();
             buffer.clear();
             buffer.addAll(layout.texts(topLine, topLine + screenLineSize()));
             buffer.stream().mapToDouble(Text::width)
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.layout;
+
+import java.util.Arrays;
+
+/**
+ * The wrap index.
+ * Holds the number of wrapped lines of each row.
+ * A row that has not been measured yet holds an estimated line count.
+ * <p>
+ * Rows are stored in chunks of primitive arrays, and the row and line totals of
+ * the chunks are held by fenwick trees. Inserting or removing rows touches only
+ * the chunks concerned, the rows that follow are never re-numbered.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+class WrapIndex {
+
+    /** The standard number of rows in a chunk. */
+    private static final int CHUNK_SIZE = 256;
+
+    /** The chunks. */
+    private Chunk[] chunks;
+    /** The number of chunks. */
+    private int chunkSize;
+    /** The fenwick tree of the row counts of the chunks. */
+    private int[] rowTree;
+    /** The fenwick tree of the line counts of the chunks. */
+    private int[] lineTree;
+    /** The number of rows. */
+    private int rows;
+    /** The current generation. */
+    private int generation = 0;
+
+    WrapIndex(int rows) {
+        this.rows = rows;
+        this.chunkSize = Math.max(1, (rows + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        this.chunks = new Chunk[chunkSize];
+        for (int i = 0; i < chunkSize; i++) {
+            chunks[i] = new Chunk(Math.min(CHUNK_SIZE, rows - i * CHUNK_SIZE));
+        }
+        build();
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int lines() {
+        return prefix(lineTree, chunkSize);
+    }
+
+    boolean isMeasured(int row) {
+        int c = chunkOf(row);
+        return chunks[c].measured[row - prefix(rowTree, c)] == generation;
+    }
+
+    /**
+     * Set the measured line count of the row.
+     * @param row the row
+     * @param lineCount the line count
+     */
+    void set(int row, int lineCount) {
+        int c = chunkOf(row);
+        Chunk chunk = chunks[c];
+        int i = row - prefix(rowTree, c);
+        int delta = lineCount - chunk.counts[i];
+        chunk.counts[i] = lineCount;
+        chunk.measured[i] = generation;
+        if (delta != 0) {
+            add(lineTree, c, delta);
+        }
+    }
+
+    /**
+     * Invalidate all rows.
+     * The current line counts remain as estimates.
+     */
+    void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Invalidate the rows.
+     * @param startRow the start row
+     * @param endRow the end row(exclusive)
+     */
+    void invalidate(int startRow, int endRow) {
+        startRow = Math.max(0, startRow);
+        endRow = Math.min(endRow, rows);
+        if (startRow == 0 && endRow == rows) {
+            invalidate();
+            return;
+        }
+        if (startRow >= endRow) return;
+        int c = chunkOf(startRow);
+        int i = startRow - prefix(rowTree, c);
+        for (int row = startRow; row < endRow; row++, i++) {
+            if (i == chunks[c].size) {
+                c++;
+                i = 0;
+            }
+            chunks[c].measured[i] = -1;
+        }
+    }
+
+    /**
+     * Insert unmeasured rows.
+     * @param row the row at which to insert
+     * @param n the number of rows
+     */
+    void insert(int row, int n) {
+        if (n <= 0) return;
+        int c = (row >= rows) ? chunkSize - 1 : chunkOf(row);
+        Chunk chunk = chunks[c];
+        int i = row - prefix(rowTree, c);
+        rows += n;
+        if (chunk.size + n <= CHUNK_SIZE * 2) {
+            chunk.insert(i, n);
+            add(rowTree, c, n);
+            add(lineTree, c, n);
+        } else {
+            Chunk[] split = chunk.split(i, n);
+            Chunk[] newChunks = new Chunk[chunkSize + split.length - 1];
+            System.arraycopy(chunks, 0, newChunks, 0, c);
+            System.arraycopy(split, 0, newChunks, c, split.length);
+            System.arraycopy(chunks, c + 1, newChunks, c + split.length, chunkSize - c - 1);
+            chunks = newChunks;
+            chunkSize = newChunks.length;
+            build();
+        }
+    }
+
+    /**
+     * Remove rows.
+     * @param row the first row to remove
+     * @param n the number of rows
+     */
+    void remove(int row, int n) {
+        n = Math.min(n, rows - row);
+        if (n <= 0) return;
+        int c = chunkOf(row);
+        int i = row - prefix(rowTree, c);
+        boolean emptied = false;
+        rows -= n;
+        while (n > 0) {
+            Chunk chunk = chunks[c];
+            int k = Math.min(n, chunk.size - i);
+            int lines = chunk.remove(i, k);
+            add(rowTree, c, -k);
+            add(lineTree, c, -lines);
+            emptied |= chunk.size == 0;
+            n -= k;
+            c++;
+            i = 0;
+        }
+        if (emptied) {
+            Chunk[] remains = Arrays.stream(chunks, 0, chunkSize)
+                    .filter(chunk -> chunk.size > 0).toArray(Chunk[]::new);
+            chunks = (remains.length == 0) ? new Chunk[] { new Chunk(0) } : remains;
+            chunkSize = chunks.length;
+            build();
+        }
+    }
+
+    /**
+     * Get the first line of the row.
+     * @param row the row
+     * @return the number of lines before the row
+     */
+    int rowToFirstLine(int row) {
+        if (row <= 0) return 0;
+        if (row >= rows) return lines();
+        int c = chunkOf(row);
+        int line = prefix(lineTree, c);
+        int[] counts = chunks[c].counts;
+        for (int i = 0, n = row - prefix(rowTree, c); i < n; i++) {
+            line += counts[i];
+        }
+        return line;
+    }
+
+    /**
+     * Get the row that contains the line.
+     * @param line the line
+     * @return the row, or the number of rows if the line is out of range
+     */
+    int lineToRow(int line) {
+        if (line <= 0) return 0;
+        int c = search(lineTree, line);
+        if (c >= chunkSize) return rows;
+        line -= prefix(lineTree, c);
+        int row = prefix(rowTree, c);
+        Chunk chunk = chunks[c];
+        for (int i = 0; i < chunk.size; i++) {
+            if (line < chunk.counts[i]) {
+                return row + i;
+            }
+            line -= chunk.counts[i];
+        }
+        return row + chunk.size;
+    }
+
+    private int chunkOf(int row) {
+        return Math.min(search(rowTree, row), chunkSize - 1);
+    }
+
+    private void build() {
+        rowTree = new int[chunkSize + 1];
+        lineTree = new int[chunkSize + 1];
+        for (int i = 1; i <= chunkSize; i++) {
+            Chunk chunk = chunks[i - 1];
+            rowTree[i] += chunk.size;
+            lineTree[i] += chunk.lines();
+            int parent = i + (i & -i);
+            if (parent <= chunkSize) {
+                rowTree[parent] += rowTree[i];
+                lineTree[parent] += lineTree[i];
+            }
+        }
+    }
+
+    private void add(int[] tree, int index, int delta) {
+        for (int i = index + 1; i <= chunkSize; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private int prefix(int[] tree, int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Search the index of the chunk that contains the value.
+     * @param tree the fenwick tree
+     * @param value the value
+     * @return the largest index whose prefix is less than or equal to the value
+     */
+    private int search(int[] tree, int value) {
+        int index = 0;
+        for (int step = Integer.highestOneBit(chunkSize); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= chunkSize && tree[next] <= value) {
+                index = next;
+                value -= tree[next];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The chunk of rows.
+     */
+    private static class Chunk {
+        /** The line counts of each row. */
+        private int[] counts;
+        /** The generation at which each row was measured. */
+        private int[] measured;
+        /** The number of rows. */
+        private int size;
+
+        Chunk(int size) {
+            this.size = size;
+            this.counts = new int[Math.max(size, 16)];
+            this.measured = new int[counts.length];
+            Arrays.fill(counts, 1);
+            Arrays.fill(measured, -1);
+        }
+
+        int lines() {
+            int lines = 0;
+            for (int i = 0; i < size; i++) {
+                lines += counts[i];
+            }
+            return lines;
+        }
+
+        void insert(int index, int n) {
+            if (size + n > counts.length) {
+                int capacity = Math.max(size + n, counts.length * 2);
+                counts = Arrays.copyOf(counts, capacity);
+                measured = Arrays.copyOf(measured, capacity);
+            }
+            System.arraycopy(counts, index, counts, index + n, size - index);
+            System.arraycopy(measured, index, measured, index + n, size - index);
+            Arrays.fill(counts, index, index + n, 1);
+            Arrays.fill(measured, index, index + n, -1);
+            size += n;
+        }
+
+        int remove(int index, int n) {
+            int lines = 0;
+            for (int i = index; i < index + n; i++) {
+                lines += counts[i];
+            }
+            System.arraycopy(counts, index + n, counts, index, size - index - n);
+            System.arraycopy(measured, index + n, measured, index, size - index - n);
+            size -= n;
+            return lines;
+        }
+
+        Chunk[] split(int index, int n) {
+            insert(index, n);
+            Chunk[] ret = new Chunk[(size + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            for (int i = 0; i < ret.length; i++) {
+                int from = i * CHUNK_SIZE;
+                int len = Math.min(CHUNK_SIZE, size - from);
+                Chunk chunk = new Chunk(len);
+                System.arraycopy(counts, from, chunk.counts, 0, len);
+                System.arraycopy(measured, from, chunk.measured, 0, len);
+                ret[i] = chunk;
+            }
+            return ret;
+        }
+    }
+
+}
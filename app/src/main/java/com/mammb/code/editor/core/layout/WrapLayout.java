@@ -21,84 +21,67 @@ import com.mammb.code.editor.core.text.RowText;
 import com.mammb.code.editor.core.text.SubText;
 import com.mammb.code.editor.core.text.Text;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.IntStream;
 
 /**
  * The WrapLayout.
+ * <p>
+ * Rows are wrapped lazily. Only the rows around the requested lines are measured,
+ * the other rows use the estimated line counts held by the {@link WrapIndex}.
+ * </p>
  * @author Naotsugu Kobayashi
  */
 public class WrapLayout implements ContentLayout {
 
+    /** The maximum number of edited rows measured eagerly. */
+    private static final int MEASURE_LIMIT = 1024;
+
     private double screenWidth = 0;
     private final double lineHeight;
     private final double standardCharWidth;
     private final Content content;
-    private final FontMetrics fm;
-    private final List<SubRange> lines = new ArrayList<>();
+    private final RowTextCache cache;
+    private WrapIndex index;
 
     public WrapLayout(Content content, FontMetrics fm) {
         this.lineHeight = fm.getLineHeight();
         this.standardCharWidth = fm.getAdvance("0");
         this.content = content;
-        this.fm = fm;
+        this.cache = new RowTextCache(content, fm, 512);
+        this.index = new WrapIndex(content.rows());
     }
 
     public void setScreenWidth(double width) {
+        if (this.screenWidth == width) return;
         this.screenWidth = width;
         refresh(0);
     }
 
     public void refresh(int line) {
-        lines.subList(line, lines.size()).clear();
-        int i = 0;
-        if (!lines.isEmpty()) {
-            var range = lines.getLast();
-            if (range.subLine() != range.subLines()) {
-                lines.subList(lines.size() - (range.subLine() + 1), lines.size()).clear();
-                i = range.row();
-            } else {
-                i = range.row() + 1;
-            }
-        }
-        for (; i < content.rows(); i++) {
-            lines.addAll(subRanges(i));
+        if (index.rows() != content.rows()) {
+            index = new WrapIndex(content.rows());
+        } else {
+            index.invalidate();
         }
     }
+
     public void refreshAt(int startRow, int endRow) {
-        int start = rowToFirstLine(startRow);
-        int end   = rowToFirstLine(endRow);
-        lines.subList(start, end).clear();
-        List<SubRange> newLines = IntStream.range(startRow, endRow)
-                .mapToObj(this::subRanges)
-                .flatMap(Collection::stream)
-                .toList();
-        var next = lines.get(start);
-        int n = (next == null || newLines.isEmpty())
-                ? 0
-                : (newLines.getLast().row() + 1) - next.row();
-        if (n != 0) {
-            for (int i = start; i < lines.size(); i++) {
-                lines.get(i).plusRow(n);
-            }
+        cache.refresh(startRow, endRow);
+        int delta = content.rows() - index.rows();
+        if (delta > 0) {
+            index.insert(endRow - delta, delta);
+        } else if (delta < 0) {
+            index.remove(endRow, -delta);
         }
-        lines.addAll(start, newLines);
-    }
-
-    private List<SubRange> subRanges(int row) {
-        int line = rowToFirstLine(row);
-        return lines.subList(line, line + lines.get(line).subLines());
+        index.invalidate(startRow, endRow);
+        measure(startRow, Math.min(endRow, startRow + MEASURE_LIMIT));
     }
 
     public Text text(int line) {
-        SubRange range = lines.get(line);
-        List<SubText> subs = subTextsAt(range.row());
-        return subs.get(range.subLine());
+        int row = lineToRow(line);
+        List<SubText> subs = subTextsAt(row);
+        return subs.get(Math.clamp(line - rowToFirstLine(row), 0, subs.size() - 1));
     }
 
     @Override
@@ -109,32 +92,70 @@ public class WrapLayout implements ContentLayout {
             startLine = endLine;
             endLine = tmp;
         }
-        var startRange = lines.get(startLine);
-        var endRange   = lines.get(endLine - 1);
-        return IntStream.rangeClosed(startRange.row(), endRange.row()).mapToObj(i -> {
-            var subs = subTextsAt(i);
-            if (i == endRange.row() && subs.size() >= endRange.subLine() + 1) {
-                subs.subList(endRange.subLine() + 1, subs.size()).clear();
-            }
-            if (i == startRange.row()) {
-                subs.subList(0, startRange.subLine()).clear();
+        int margin = endLine - startLine;
+        int startRow = lineToRow(startLine);
+        measure(startRow - margin, startRow + margin * 2);
+
+        List<Text> texts = new ArrayList<>();
+        int row = lineToRow(startLine);
+        int line = rowToFirstLine(row);
+        for (; line < endLine && row < index.rows(); row++) {
+            for (SubText sub : subTextsAt(row)) {
+                if (startLine <= line && line < endLine) {
+                    texts.add(sub);
+                }
+                line++;
             }
-            return subs;
-        }).flatMap(Collection::stream).map(Text.class::cast).toList();
+        }
+        return texts;
+    }
+
+    @Override
+    public List<Text> shiftRows(List<Text> texts, int delta) {
+        List<Text> ret = new ArrayList<>();
+        for (int i = 0; i < texts.size();) {
+            var head = (SubText) texts.get(i);
+            int j = i + 1;
+            while (j < texts.size() && texts.get(j).row() == head.row()) j++;
+            int from = head.fromIndex();
+            int to = ((SubText) texts.get(j - 1)).fromIndex();
+            SubText.of(RowText.of(head.row() + delta, (RowText) head.parent()), screenWidth).stream()
+                    .filter(sub -> from <= sub.fromIndex() && sub.fromIndex() <= to)
+                    .forEach(ret::add);
+            i = j;
+        }
+        return ret;
     }
 
     @Override
     public RowText rowText(int line) {
-        return rowTextAt(lines.get(line).row());
+        return rowTextAt(lineToRow(line));
     }
 
     @Override
     public RowText rowTextAt(int row) {
-        return RowText.of(row, content.getText(row), fm);
+        return cache.get(row);
+    }
+
+    @Override
+    public RowTextCache rowTextCache() {
+        return cache;
     }
 
     private List<SubText> subTextsAt(int row) {
-        return SubText.of(rowTextAt(row), screenWidth);
+        List<SubText> subs = SubText.of(rowTextAt(row), screenWidth);
+        if (row < index.rows() && !index.isMeasured(row)) {
+            index.set(row, subs.size());
+        }
+        return subs;
+    }
+
+    private void measure(int startRow, int endRow) {
+        for (int row = Math.max(0, startRow); row < Math.min(endRow, index.rows()); row++) {
+            if (!index.isMeasured(row)) {
+                index.set(row, SubText.of(rowTextAt(row), screenWidth).size());
+            }
+        }
     }
 
     @Override
@@ -144,12 +165,29 @@ public class WrapLayout implements ContentLayout {
 
     @Override
     public int xToCol(int line, double x) {
-        return text(line).indexTo(x) + lines.get(line).fromIndex();
+        return xToCol(text(line), x);
+    }
+
+    @Override
+    public double xOnLayout(int line, int col) {
+        return xOnLayout(text(line), col);
+    }
+
+    @Override
+    public int xToCol(Text text, double x) {
+        SubText sub = (SubText) text;
+        return sub.indexTo(x) + sub.fromIndex();
+    }
+
+    @Override
+    public double xOnLayout(Text text, int col) {
+        SubText sub = (SubText) text;
+        return sub.widthTo(col - sub.fromIndex());
     }
 
     @Override
     public int homeColOnRow(int line) {
-        return lines.get(line).fromIndex();
+        return ((SubText) text(line)).fromIndex();
     }
 
     @Override
@@ -159,7 +197,7 @@ public class WrapLayout implements ContentLayout {
 
     @Override
     public int lineSize() {
-        return lines.size();
+        return index.lines();
     }
 
     @Override
@@ -170,84 +208,39 @@ public class WrapLayout implements ContentLayout {
     @Override
     public int rowToFirstLine(int row) {
         if (row <= 0) return 0;
-        int line = Collections.binarySearch(lines, new SubRange(row, 0, 0, 0, 0));
-        return (line < 0) ? lines.size() : line;
+        return index.rowToFirstLine(row);
     }
 
     @Override
     public int rowToLastLine(int row) {
-        int first = rowToFirstLine(row);
-        return first + lines.get(first).subLines - 1;
+        return rowToFirstLine(row) + subTextsAt(row).size() - 1;
     }
 
     @Override
     public int lineToRow(int line) {
         if (line <= 0) return 0;
-        var sub = lines.get(line);
-        return (sub == null) ? content.rows() : sub.row();
+        return index.lineToRow(line);
     }
 
     @Override
     public int rowToLine(int row, int col) {
+        List<SubText> subs = subTextsAt(row);
         int line = rowToFirstLine(row);
-        for (int i = 0; i < lines.get(line).subLines; i++) {
-            if (lines.get(line + i).contains(row, col)) {
+        for (int i = 0; i < subs.size(); i++) {
+            if (subs.get(i).contains(col)) {
                 return line + i;
             }
         }
-        return lines.size();
+        return line + subs.size() - 1;
     }
 
     @Override
     public Optional<Loc> loc(int row, int col, int rangeLineStart, int rangeLineEnd) {
-        for (int i = rangeLineStart; i < rangeLineEnd; i++) {
-            SubRange sub = lines.get(i);
-            if (sub.contains(row, col)) {
-                return Optional.of(new Loc(xOnLayout(i, col), yOnLayout(i)));
-            }
-        }
-        return Optional.empty();
-    }
-
-    static class SubRange implements Comparable<SubRange> {
-        private int row, subLine, subLines, fromIndex, toIndex;
-        public SubRange(int row, int subLine, int subLines, int fromIndex, int toIndex) {
-            this.row = row;
-            this.subLine = subLine;
-            this.subLines = subLines;
-            this.fromIndex = fromIndex;
-            this.toIndex = toIndex;
-        }
-        public void plusRow(int n) { row += n; }
-        public int row() { return row; }
-        public int subLine() { return  subLine; }
-        public int subLines() { return subLines; }
-        public int fromIndex() { return fromIndex; }
-        public int toIndex() { return toIndex; }
-        public int length() { return toIndex - fromIndex; }
-        boolean contains(int row, int col) {
-            return this.row == row && this.fromIndex <= col && col < this.toIndex;
-        }
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            SubRange subRange = (SubRange) o;
-            return row == subRange.row &&
-                    subLine == subRange.subLine &&
-                    subLines == subRange.subLines &&
-                    fromIndex == subRange.fromIndex &&
-                    toIndex == subRange.toIndex;
-        }
-        @Override
-        public int hashCode() {
-            return Objects.hash(row, subLine, subLines, fromIndex, toIndex);
-        }
-        @Override
-        public int compareTo(SubRange that) {
-            return Comparator.comparing(SubRange::row)
-                    .thenComparing(SubRange::subLine)
-                    .compare(this, that);
+        int line = rowToLine(row, col);
+        if (rangeLineStart <= line && line < rangeLineEnd) {
+            return Optional.of(new Loc(xOnLayout(line, col), yOnLayout(line)));
+        } else {
+            return Optional.empty();
         }
     }
 
@@ -22,7 +22,10 @@ import com.mammb.code.editor.core.Content;
 import com.mammb.code.editor.core.Decorate;
 import com.mammb.code.editor.core.Draw;
 import com.mammb.code.editor.core.EditorModel;
+import com.mammb.code.editor.core.Finder;
+import com.mammb.code.editor.core.Highlights;
 import com.mammb.code.editor.core.FontMetrics;
+import com.mammb.code.editor.core.Query;
 import com.mammb.code.editor.core.ScreenScroll;
 import com.mammb.code.editor.core.Theme;
 import com.mammb.code.editor.core.layout.ScreenLayout;
@@ -32,9 +35,11 @@ import com.mammb.code.editor.core.text.Style;
 import com.mammb.code.editor.core.text.Style.StyleSpan;
 import com.mammb.code.editor.core.text.StyledText;
 import com.mammb.code.editor.core.text.Text;
+import com.mammb.code.editor.core.text.WordIndex;
 import com.mammb.code.editor.core.Caret.Point;
 import com.mammb.code.editor.core.Caret.Range;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -49,28 +54,134 @@ public class TextEditorModel implements EditorModel {
 
     private double marginTop = 5, marginLeft = 70;
     private boolean caretVisible = true;
+    /** Whether the content follows the file. */
+    private boolean following = false;
+    /** Whether the rows are wrapped at the screen width. */
+    private boolean wrapped = false;
     private final Content content;
-    private final ScreenLayout view;
+    private final FontMetrics fm;
+    private ScreenLayout view;
     private final CaretGroup carets = CaretGroup.of();
     private final Decorate decorate;
+    private final Finder finder;
     private final ScreenScroll scroll;
+    /** The previous frame, or {@code null} if the next frame is drawn in full. */
+    private Frame frame;
+    /** The number of lines repainted in the last frame. */
+    private int repaintedLines;
 
     public TextEditorModel(Content content, FontMetrics fm, Syntax syntax, ScreenScroll scroll) {
         this.content = content;
+        this.fm = fm;
         this.view = ScreenLayout.of(content, fm);
-        this.decorate = Decorate.of(syntax);
+        this.decorate = Decorate.of(syntax, content);
+        this.finder = Finder.of(content);
         this.scroll = scroll;
     }
 
     @Override
     public void draw(Draw draw) {
+        int rows = content.rows();
+        boolean pinned = following && isBottomOnScreen();
+        if (content.sync()) {
+            // the rows are appended, the find goes on over them
+            view.refreshBuffer(rows - 1, content.rows());
+            decorate.invalidate(rows - 1, content.rows());
+            finder.extend();
+            if (pinned) scrollToBottom();
+        }
+        finder.poll(decorate.highlights()::add);
         view.applyScreenScroll(scroll);
+        List<Text> lineNumbers = view.lineNumbers();
+        double nw = lineNumbers.stream().mapToDouble(Text::width).max().orElse(0);
+        if (nw + 16 * 2 > marginLeft) {
+            double width = view.screenWidth() + marginLeft;
+            double height = view.screenHeight() + marginTop;
+            marginLeft = nw + 16 * 2;
+            setSize(width, height);
+            lineNumbers = view.lineNumbers();
+        }
+        List<Text> texts = view.texts();
+        Frame next = frame(texts, lineNumbers);
+        boolean overlay = carets.hasMarked() || carets.carets().stream().anyMatch(Caret::hasFlush);
+        if (frame == null || overlay || !frame.sameBounds(next)) {
+            drawFull(draw, next);
+        } else {
+            drawDamaged(draw, next);
+        }
+        frame = overlay ? null : next;
+        draw.flush();
+        prefetch(texts);
+    }
+
+    private void drawFull(Draw draw, Frame next) {
         draw.clear();
         drawSelection(draw);
-        drawText(draw);
-        drawMap(draw);
+        double y = 0;
+        for (LineFrame line : next.lines()) {
+            drawText(draw, line, y);
+            y += line.text().height();
+        }
+        drawMap(draw, -Double.MAX_VALUE, Double.MAX_VALUE);
         if (caretVisible) drawCaret(draw);
-        drawLeftGarter(draw);
+        draw.rect(0, 0, marginLeft - 5, view.screenHeight() + marginTop);
+        y = 0;
+        for (LineFrame line : next.lines()) {
+            drawLineNumber(draw, line, y);
+            y += line.text().height();
+        }
+        repaintedLines = next.lines().size();
+    }
+
+    private void drawDamaged(Draw draw, Frame next) {
+        repaintedLines = 0;
+        double y = 0;
+        int n = Math.max(frame.lines().size(), next.lines().size());
+        for (int i = 0; i < n; i++) {
+            LineFrame prev = (i < frame.lines().size()) ? frame.lines().get(i) : null;
+            LineFrame line = (i < next.lines().size()) ? next.lines().get(i) : null;
+            double h = (line != null) ? line.text().height() : prev.text().height();
+            if (line == null || prev == null || !line.sameAs(prev)) {
+                draw.clear(0, y + marginTop, view.screenWidth() + marginLeft, h);
+                if (line != null) drawText(draw, line, y);
+                drawMap(draw, y + marginTop - 1, y + marginTop + h + 1);
+                if (line != null) {
+                    for (double x : line.carets()) {
+                        draw.caret(x + marginLeft - scroll.xVal(), y + marginTop);
+                    }
+                }
+                draw.rect(0, y + marginTop, marginLeft - 5, h);
+                if (line != null) drawLineNumber(draw, line, y);
+                repaintedLines++;
+            }
+            y += h;
+        }
+    }
+
+    private Frame frame(List<Text> texts, List<Text> lineNumbers) {
+        double lineHeight = view.lineHeight();
+        List<Caret> visible = visibleCarets(texts);
+        List<List<Double>> caretXs = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) caretXs.add(new ArrayList<>());
+        if (caretVisible) {
+            for (Caret c : visible) {
+                Point p = c.pointFlush();
+                view.locationOn(p.row(), p.col()).ifPresent(loc -> {
+                    int line = (int) (loc.y() / lineHeight);
+                    if (0 <= line && line < caretXs.size()) caretXs.get(line).add(loc.x());
+                });
+            }
+        }
+        List<LineFrame> lines = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            Text text = texts.get(i);
+            Text number = (i < lineNumbers.size()) ? lineNumbers.get(i) : null;
+            lines.add(new LineFrame(text, decorate.apply(text), caretXs.get(i), number,
+                    carets.hasCaretOn(text.row())));
+        }
+        return new Frame(scroll.xVal(), marginLeft, view.screenWidth(), view.screenHeight(),
+                decorate.highlights().size() == 0 ? 0 : content.rows(),
+                decorate.highlights().size(), lines);
     }
 
     private void drawSelection(Draw draw) {
@@ -87,32 +198,48 @@ public class TextEditorModel implements EditorModel {
         }
     }
 
-    private void drawText(Draw draw) {
-        double x, y = 0;
-        for (Text text : view.texts()) {
-            x = 0;
-            List<StyleSpan> spans = decorate.apply(text);
-            for (StyledText st : StyledText.of(text).putAll(spans).build()) {
-                draw.text(st.value(),
-                        x + marginLeft - scroll.xVal(),
-                        y + marginTop,
-                        st.width(),
-                        st.styles());
-                x += st.width();
-            }
-            y += text.height();
+    private void drawText(Draw draw, LineFrame line, double y) {
+        double x = 0;
+        for (StyledText st : StyledText.of(line.text()).putAll(line.spans()).build()) {
+            draw.text(st.value(),
+                    x + marginLeft - scroll.xVal(),
+                    y + marginTop,
+                    st.width(),
+                    st.styles());
+            x += st.width();
+        }
+    }
+
+    private void prefetch(List<Text> texts) {
+        if (!texts.isEmpty()) {
+            int n = view.screenLineSize();
+            int top = texts.getFirst().row();
+            int bottom = texts.getLast().row() + 1;
+            decorate.prefetch(top, Math.min(bottom, content.rows()));
+            decorate.prefetch(bottom, Math.min(bottom + n, content.rows()));
+            decorate.prefetch(Math.max(0, top - n), top);
         }
     }
 
-    private void drawMap(Draw draw) {
-        for (int row : decorate.highlightsRows()) {
-            double y = (view.screenHeight() - marginTop) * row / (content.rows() + view.screenLineSize());
-            draw.hLine(view.screenWidth() + marginLeft - 12, y, 12);
+    private void drawMap(Draw draw, double minY, double maxY) {
+        Highlights highlights = decorate.highlights();
+        if (highlights.size() == 0) return;
+        for (int i = 0; i < highlights.buckets(); i++) {
+            if (highlights.density(i) == 0) continue;
+            double y = (view.screenHeight() - marginTop) * highlights.bucketRow(i) / (content.rows() + view.screenLineSize());
+            if (minY <= y && y <= maxY) {
+                draw.hLine(view.screenWidth() + marginLeft - 12, y, 12);
+            }
         }
     }
 
+    private List<Caret> visibleCarets(List<Text> texts) {
+        if (texts.isEmpty()) return List.of();
+        return carets.carets(texts.getFirst().row(), texts.getLast().row() + 1);
+    }
+
     private void drawCaret(Draw draw) {
-        for (Caret c : carets.carets()) {
+        for (Caret c : visibleCarets(view.texts())) {
             Point p = c.pointFlush();
             view.locationOn(p.row(), p.col()).ifPresent(loc -> {
                 draw.caret(loc.x() + marginLeft - scroll.xVal(), loc.y() + marginTop);
@@ -125,25 +252,14 @@ public class TextEditorModel implements EditorModel {
         }
     }
 
-    private void drawLeftGarter(Draw draw) {
-        List<Text> lineNumbers = view.lineNumbers();
-        double nw = lineNumbers.stream().mapToDouble(Text::width).max().orElse(0);
-        if (nw + 16 * 2 > marginLeft) {
-            double newMarginLeft = nw + 8 * 2;
-            setSize(view.screenWidth() + marginLeft - newMarginLeft, view.screenHeight());
-            draw(draw);
-            return;
-        }
-        draw.rect(0, 0, marginLeft - 5, view.screenHeight() + marginTop);
-        double y = 0;
-        for (Text num : lineNumbers) {
-            String colorString = carets.points().stream().anyMatch(p -> p.row() == num.row())
-                    ? Theme.dark.fgColor()
-                    : Theme.dark.fgColor() + "66";
-            draw.text(num.value(), marginLeft - 16 - num.width(), y + marginTop, num.width(),
-                    List.of(new Style.TextColor(colorString)));
-            y += num.height();
-        }
+    private void drawLineNumber(Draw draw, LineFrame line, double y) {
+        Text num = line.number();
+        if (num == null) return;
+        String colorString = line.caretRow()
+                ? Theme.dark.fgColor()
+                : Theme.dark.fgColor() + "66";
+        draw.text(num.value(), marginLeft - 16 - num.width(), y + marginTop, num.width(),
+                List.of(new Style.TextColor(colorString)));
     }
 
     @Override
@@ -196,6 +312,7 @@ public class TextEditorModel implements EditorModel {
                 c.at(c.row(), next);
             }
         }
+        carets.merge();
     }
 
     @Override
@@ -212,34 +329,41 @@ public class TextEditorModel implements EditorModel {
                 c.at(c.row(), next);
             }
         }
+        carets.merge();
     }
 
     @Override
     public void moveCaretDown(boolean withSelect) {
-        for (Caret c : carets.carets()) {
-            c.markIf(withSelect);
-            int line = view.rowToLine(c.row(), c.col());
-            if (line == view.lineSize()) continue;
-            double x = (c.vPos() < 0)
-                    ? view.xOnLayout(line, c.col())
-                    : c.vPos();
-            line++;
-            c.at(view.lineToRow(line), view.xToCol(line, x), x);
-        }
+        moveCaretVertical(1, withSelect);
     }
 
     @Override
     public void moveCaretUp(boolean withSelect) {
-        for (Caret c : carets.carets()) {
+        moveCaretVertical(-1, withSelect);
+    }
+
+    /**
+     * Move the carets to the next or previous line.
+     * The carets are visited in the direction of the move, so that the
+     * line a caret moves to is the line of the caret visited next.
+     * @param delta {@code 1} to move down, {@code -1} to move up
+     * @param withSelect whether to select
+     */
+    private void moveCaretVertical(int delta, boolean withSelect) {
+        List<Caret> list = (delta < 0) ? carets.carets().reversed() : carets.carets();
+        LineTexts texts = new LineTexts(view);
+        int lineSize = view.lineSize();
+        for (Caret c : list) {
             c.markIf(withSelect);
             int line = view.rowToLine(c.row(), c.col());
-            if (line == 0) continue;
+            if ((delta > 0 && line == lineSize) || (delta < 0 && line == 0)) continue;
             double x = (c.vPos() < 0)
-                    ? view.xOnLayout(line, c.col())
+                    ? view.xOnLayout(texts.get(line), c.col())
                     : c.vPos();
-            line--;
-            c.at(view.lineToRow(line), view.xToCol(line, x), x);
+            line += delta;
+            c.at(view.lineToRow(line), view.xToCol(texts.get(line), x), x);
         }
+        carets.merge();
     }
 
     @Override
@@ -249,6 +373,7 @@ public class TextEditorModel implements EditorModel {
             int line = view.rowToLine(c.row(), c.col());
             c.at(c.row(), view.homeColOnRow(line));
         }
+        carets.merge();
     }
 
     @Override
@@ -258,6 +383,7 @@ public class TextEditorModel implements EditorModel {
             int line = view.rowToLine(c.row(), c.col());
             c.at(c.row(), view.endColOnRow(line));
         }
+        carets.merge();
     }
 
     @Override
@@ -326,18 +452,12 @@ public class TextEditorModel implements EditorModel {
     @Override
     public void clickDouble(double x, double y) {
         int line = view.yToLineOnScreen(y - marginTop);
-        var text = view.text(line);
-        double xp = 0;
-        for (var word : text.words()) {
-            if (xp + word.width() > x - marginLeft) {
-                Caret c = carets.getFirst();
-                int row = view.lineToRow(line);
-                c.markTo(row, view.xToCol(line, xp),
-                        row, view.xToCol(line, xp + word.width()));
-                break;
-            }
-            xp += word.width();
-        }
+        int row = view.lineToRow(line);
+        int col = view.xToCol(line, x - marginLeft);
+        Text text = view.rowTextAt(row);
+        if (text == null || col >= text.textLength()) return;
+        WordIndex words = text.wordIndex();
+        carets.getFirst().markTo(row, words.start(col), row, words.end(col));
     }
 
     @Override
@@ -365,28 +485,28 @@ public class TextEditorModel implements EditorModel {
 
     @Override
     public void input(String text) {
+        if (content.isReadOnly()) return;
         if (carets.size() == 1) {
             Caret caret = carets.getFirst();
             if (caret.isMarked()) {
                 selectionReplace(caret, text);
             } else {
                 var pos = content.insert(caret.point(), text);
-                view.refreshBuffer(caret.row(), pos.row() + 1);
+                refresh(caret.row(), pos.row() + 1);
                 caret.at(pos);
             }
         } else {
             if (carets.hasMarked()) {
                 var ranges = carets.ranges();
+                int firstRow = Collections.min(ranges).min().row();
                 var points = content.replace(ranges, text);
-                view.refreshBuffer(
-                        Collections.min(points).row(),
-                        Collections.max(points).row() + 1);
+                refresh(firstRow, points);
                 carets.at(points);
             } else {
-                var points = content.insert(carets.points(), text);
-                view.refreshBuffer(
-                        Collections.min(points).row(),
-                        Collections.max(points).row() + 1);
+                var points = carets.points();
+                int firstRow = Collections.min(points).row();
+                points = content.insert(points, text);
+                refresh(firstRow, points);
                 carets.at(points);
             }
         }
@@ -394,27 +514,27 @@ public class TextEditorModel implements EditorModel {
 
     @Override
     public void delete() {
+        if (content.isReadOnly()) return;
         if (carets.size() == 1) {
             Caret caret = carets.getFirst();
             if (caret.isMarked()) {
                 selectionReplace(caret, "");
             } else {
-                var del = content.delete(caret.point());
-                view.refreshBuffer(caret.row(), caret.row() + 1);
+                content.delete(caret.point());
+                refresh(caret.row(), caret.row() + 1);
             }
         } else {
             if (carets.hasMarked()) {
                 var ranges = carets.ranges();
+                int firstRow = Collections.min(ranges).min().row();
                 var points = content.replace(ranges, "");
-                view.refreshBuffer(
-                        Collections.min(points).row(),
-                        Collections.max(points).row() + 1);
+                refresh(firstRow, points);
                 carets.at(points);
             } else {
-                var points = content.delete(carets.points());
-                view.refreshBuffer(
-                        Collections.min(points).row(),
-                        Collections.max(points).row() + 1);
+                var points = carets.points();
+                int firstRow = Collections.min(points).row();
+                points = content.delete(points);
+                refresh(firstRow, points);
                 carets.at(points);
             }
         }
@@ -422,28 +542,28 @@ public class TextEditorModel implements EditorModel {
 
     @Override
     public void backspace() {
+        if (content.isReadOnly()) return;
         if (carets.size() == 1) {
             Caret caret = carets.getFirst();
             if (caret.isMarked()) {
                 selectionReplace(caret, "");
             } else {
                 var pos = content.backspace(caret.point());
-                view.refreshBuffer(pos.row(), caret.row() + 1);
+                refresh(pos.row(), pos.row() + 1);
                 caret.at(pos);
             }
         } else {
             if (carets.hasMarked()) {
                 var ranges = carets.ranges();
+                int firstRow = Collections.min(ranges).min().row();
                 var points = content.replace(ranges, "");
-                view.refreshBuffer(
-                        Collections.min(points).row(),
-                        Collections.max(points).row() + 1);
+                refresh(firstRow, points);
                 carets.at(points);
             } else {
-                var points = content.backspace(carets.points());
-                view.refreshBuffer(
-                        Collections.min(points).row(),
-                        Collections.max(points).row() + 1);
+                var points = carets.points();
+                int firstRow = Collections.min(points).row();
+                points = content.backspace(points);
+                refresh(firstRow, points);
                 carets.at(points);
             }
         }
@@ -453,20 +573,47 @@ public class TextEditorModel implements EditorModel {
         assert caret.isMarked();
         var range = caret.markedRange();
         var pos = content.replace(range.start(), range.end(), text);
-        view.refreshBuffer(range.start().row(), range.end().row() + 1);
+        refresh(range.min().row(), pos.row() + 1);
         caret.clearMark();
         caret.at(pos);
         return pos;
     }
 
+    @Override
+    public double progress() {
+        return Math.min(Math.min(content.progress(), finder.progress()), decorate.progress());
+    }
+
+    private void refresh(int startRow, int endRow) {
+        view.refreshBuffer(startRow, endRow);
+        decorate.invalidate(startRow, endRow);
+        if (finder.restart(startRow)) {
+            decorate.clear();
+        }
+    }
+
+    /**
+     * Refresh the rows edited at multiple points.
+     * @param firstRow the first row of the edit points, before the edit
+     * @param points the points after the edit
+     */
+    private void refresh(int firstRow, List<Point> points) {
+        refresh(Math.min(firstRow, Collections.min(points).row()),
+                Collections.max(points).row() + 1);
+    }
+
     @Override
     public void undo() {
+        if (content.isReadOnly()) return;
         carets.at(content.undo());
+        refresh(0, content.rows());
     }
 
     @Override
     public void redo() {
+        if (content.isReadOnly()) return;
         carets.at(content.redo());
+        refresh(0, content.rows());
     }
 
     @Override
@@ -488,7 +635,12 @@ public class TextEditorModel implements EditorModel {
     @Override
     public void cutToClipboard(Clipboard clipboard) {
         copyToClipboard(clipboard);
-        content.replace(carets.marked(), "");
+        if (content.isReadOnly()) return;
+        var ranges = carets.marked();
+        if (ranges.isEmpty()) return;
+        int firstRow = Collections.min(ranges).min().row();
+        var points = content.replace(ranges, "");
+        refresh(firstRow, points);
     }
 
     @Override
@@ -496,6 +648,11 @@ public class TextEditorModel implements EditorModel {
         return content.isModified();
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return content.isReadOnly();
+    }
+
     @Override
     public Optional<Path> path() {
         return content.path();
@@ -508,12 +665,40 @@ public class TextEditorModel implements EditorModel {
     @Override
     public void escape() {
         carets.unique().clearMark();
+        finder.cancel();
         decorate.clear();
     }
 
     @Override
     public void wrap() {
-        // TODO
+        int row = view.lineToRow(view.topLine());
+        double width = view.screenWidth(), height = view.screenHeight();
+        view = wrapped
+                ? ScreenLayout.of(content, fm)
+                : ScreenLayout.wrapOf(content, fm);
+        wrapped = !wrapped;
+        view.setScreenSize(width, height);
+        view.scrollAt(view.rowToFirstLine(row));
+        frame = null;
+    }
+
+    @Override
+    public void follow() {
+        following = content.follow(!following);
+        if (following) scrollToBottom();
+    }
+
+    @Override
+    public boolean isFollowing() {
+        return following;
+    }
+
+    private boolean isBottomOnScreen() {
+        return view.topLine() + view.screenLineSize() - 2 >= view.lineSize() - 1;
+    }
+
+    private void scrollToBottom() {
+        view.scrollAt(Math.max(0, view.lineSize() - view.screenLineSize() + 2));
     }
 
     @Override
@@ -537,21 +722,78 @@ public class TextEditorModel implements EditorModel {
 
     @Override
     public void inputImeComposed(String text) {
+        if (content.isReadOnly()) return;
         Caret caret = carets.getFirst();
         content.clearFlush();
         var pos = content.insertFlush(caret.point(), text);
-        view.refreshBuffer(caret.row(), pos.row() + 1);
+        refresh(caret.row(), pos.row() + 1);
         caret.flushAt(pos);
     }
 
     @Override
-    public void findAll(String text) {
-        for (Point point : content.findAll(text)) {
-            decorate.addHighlights(point.row(), new StyleSpan(
-                    new Style.BgColor("#FDD835"),
-                    point.col(),
-                    text.length())
-            );
+    public void findAll(String text, boolean regex, boolean ignoreCase) {
+        Query query = Query.of(text, regex, ignoreCase);
+        decorate.clear();
+        finder.find(query, view.lineToRow(view.topLine()));
+    }
+
+    @Override
+    public int repaintedLines() {
+        return repaintedLines;
+    }
+
+    /**
+     * The painted state of a screen line.
+     * @param text the text
+     * @param spans the style spans of the text
+     * @param carets the x positions of the carets on the line
+     * @param number the line number, or {@code null}
+     * @param caretRow whether the line belongs to a row with a caret
+     */
+    private record LineFrame(Text text, List<StyleSpan> spans, List<Double> carets, Text number, boolean caretRow) {
+        boolean sameAs(LineFrame that) {
+            return text.row() == that.text.row() && text.value().equals(that.text.value()) &&
+                    text.width() == that.text.width() && spans.equals(that.spans) &&
+                    carets.equals(that.carets) && caretRow == that.caretRow &&
+                    (number == null ? that.number == null
+                            : that.number != null && number.value().equals(that.number.value()));
+        }
+    }
+
+    /**
+     * The painted state of a screen.
+     */
+    private record Frame(double xVal, double marginLeft, double width, double height,
+            int rows, int highlights, List<LineFrame> lines) {
+        boolean sameBounds(Frame that) {
+            return xVal == that.xVal && marginLeft == that.marginLeft && width == that.width &&
+                    height == that.height && rows == that.rows && highlights == that.highlights;
+        }
+    }
+
+    /**
+     * The texts of the lines visited by a caret move.
+     * Holds the two most recently used lines.
+     */
+    private static class LineTexts {
+        private final ScreenLayout view;
+        private final int[] lines = { -1, -1 };
+        private final Text[] texts = new Text[2];
+        private int recent = 0;
+
+        LineTexts(ScreenLayout view) {
+            this.view = view;
+        }
+
+        Text get(int line) {
+            if (lines[recent] != line) {
+                recent ^= 1;
+                if (lines[recent] != line) {
+                    lines[recent] = line;
+                    texts[recent] = view.text(line);
+                }
+            }
+            return texts[recent];
         }
     }
 
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.syntax;
+
+/**
+ * The block type.
+ * A block that is not closed at the end of a row is the state of the row.
+ * @author Naotsugu Kobayashi
+ */
+public interface BlockType extends LineState {
+
+    String open();
+    String close();
+
+    interface Neutral extends BlockType {
+        default String close() { return open(); }
+    }
+    interface Range extends BlockType { }
+
+    static Neutral neutral(String open) {
+        record NeutralRecord(String open) implements Neutral { }
+        return new NeutralRecord(open);
+    }
+    static Range range(String open, String close) {
+        record RangeRecord(String open, String close) implements Range { }
+        return new RangeRecord(open, close);
+    }
+
+}
@@ -16,11 +16,7 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style.StyleSpan;
-import com.mammb.code.editor.core.syntax.BlockScopes.BlockType;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * The Java syntax.
@@ -37,8 +33,6 @@ public class JavaSyntax implements Syntax {
     static final BlockType.Range blockComment = BlockType.range("/*", "*/");
     static final BlockType.Neutral textBlock = BlockType.neutral("\"\"\"");
 
-    private final BlockScopes scopes = new BlockScopes();
-
 
     @Override
     public String name() {
@@ -46,38 +40,29 @@ public class JavaSyntax implements Syntax {
     }
 
     @Override
-    public List<StyleSpan> apply(int row, String text) {
-
-        scopes.clear(row);
+    public LineState apply(LineState state, String text, List<StyleSpan> spans) {
 
         if (text == null || text.isBlank()) {
-            return Collections.emptyList();
+            return state;
         }
 
-        var spans = new ArrayList<StyleSpan>();
-        var source = LexerSource.of(row, text);
+        var source = LexerSource.of(text);
+        if (state == blockComment && !source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+            return state;
+        }
 
         while (source.hasNext()) {
 
-            var peek = source.peek();
-            char ch = peek.ch();
-            Optional<BlockType> block = scopes.inScope(source.row(), peek.index());
-
-            if (block.filter(t -> t == blockComment).isPresent()) {
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
-
-            } else if (ch == '/' && source.match("/*")) {
-                scopes.putOpen(source.row(), peek.index(), blockComment);
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
+            char ch = source.peek();
 
-            } else if (ch == '*' && source.match("*/")) {
-                scopes.putClose(source.row(), peek.index(), blockComment);
+            if (ch == '/' && source.match("/*")) {
+                if (!source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+                    return blockComment;
+                }
 
             } else if (ch == '/' && source.match("//")) {
-                var s = source.nextRemaining();
-                var span = new StyleSpan(Palette.gray, s.index(), s.length());
+                int start = source.nextRemaining();
+                var span = new StyleSpan(Palette.gray, start, source.index() - start);
                 spans.add(span);
 
             } else if (ch == '"' && !source.match("\"\"\"")) {
@@ -89,7 +74,7 @@ public class JavaSyntax implements Syntax {
                 if (span != null) spans.add(span);
 
             } else if (ch == ';') {
-                var span = new StyleSpan(Palette.darkOrange, peek.index(), 1);
+                var span = new StyleSpan(Palette.darkOrange, source.index(), 1);
                 spans.add(span);
 
             } else if (Character.isDigit(ch)) {
@@ -97,16 +82,16 @@ public class JavaSyntax implements Syntax {
                 if (span != null) spans.add(span);
 
             } else if (Character.isAlphabetic(ch)) {
-                var s = source.nextIdentifierPart();
-                if (keywords.match(s.string())) {
-                    var span = new StyleSpan(Palette.darkOrange, s.index(), s.length());
+                int start = source.nextIdentifierPart();
+                if (keywords.match(source.text(), start, source.index())) {
+                    var span = new StyleSpan(Palette.darkOrange, start, source.index() - start);
                     spans.add(span);
                 }
             }
             source.commitPeek();
         }
 
-        return spans;
+        return LineState.NONE;
     }
 
 }
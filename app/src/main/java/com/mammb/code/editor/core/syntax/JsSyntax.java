@@ -16,10 +16,7 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * The javascript syntax.
@@ -35,8 +32,7 @@ public class JsSyntax implements Syntax {
         synchronized,this,throw,throws,transient,true,try,typeof,var,void,volatile,while,
         with,yield
         """);
-    static final BlockScopes.BlockType.Range blockComment = BlockScopes.BlockType.range("/*", "*/");
-    private final BlockScopes scopes = new BlockScopes();
+    static final BlockType.Range blockComment = BlockType.range("/*", "*/");
 
     @Override
     public String name() {
@@ -44,36 +40,28 @@ public class JsSyntax implements Syntax {
     }
 
     @Override
-    public List<Style.StyleSpan> apply(int row, String text) {
-        scopes.clear(row);
-
+    public LineState apply(LineState state, String text, List<Style.StyleSpan> spans) {
         if (text == null || text.isBlank()) {
-            return Collections.emptyList();
+            return state;
         }
-        var spans = new ArrayList<Style.StyleSpan>();
-        var source = LexerSource.of(row, text);
-
-        while (source.hasNext()) {
 
-            var peek = source.peek();
-            char ch = peek.ch();
-            Optional<BlockScopes.BlockType> block = scopes.inScope(source.row(), peek.index());
+        var source = LexerSource.of(text);
+        if (state == blockComment && !source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+            return state;
+        }
 
-            if (block.filter(t -> t == blockComment).isPresent()) {
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
+        while (source.hasNext()) {
 
-            } else if (ch == '/' && source.match("/*")) {
-                scopes.putOpen(source.row(), peek.index(), blockComment);
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
+            char ch = source.peek();
 
-            } else if (ch == '*' && source.match("*/")) {
-                scopes.putClose(source.row(), peek.index(), blockComment);
+            if (ch == '/' && source.match("/*")) {
+                if (!source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+                    return blockComment;
+                }
 
             } else if (ch == '/' && source.match("//")) {
-                var s = source.nextRemaining();
-                var span = new Style.StyleSpan(Palette.gray, s.index(), s.length());
+                int start = source.nextRemaining();
+                var span = new Style.StyleSpan(Palette.gray, start, source.index() - start);
                 spans.add(span);
 
             } else if (ch == '\'') {
@@ -81,7 +69,7 @@ public class JsSyntax implements Syntax {
                 if (span != null) spans.add(span);
 
             } else if (ch == ';') {
-                var span = new Style.StyleSpan(Palette.darkOrange, peek.index(), 1);
+                var span = new Style.StyleSpan(Palette.darkOrange, source.index(), 1);
                 spans.add(span);
 
             } else if (Character.isDigit(ch)) {
@@ -89,16 +77,16 @@ public class JsSyntax implements Syntax {
                 if (span != null) spans.add(span);
 
             } else if (isIdentifierStart(ch)) {
-                var s = source.nextIdentifierPart();
-                if (keywords.match(s.string())) {
-                    var span = new Style.StyleSpan(Palette.darkOrange, s.index(), s.length());
+                int start = source.nextIdentifierPart();
+                if (keywords.match(source.text(), start, source.index())) {
+                    var span = new Style.StyleSpan(Palette.darkOrange, start, source.index() - start);
                     spans.add(span);
                 }
             }
             source.commitPeek();
         }
 
-        return spans;
+        return LineState.NONE;
     }
 
     public static boolean isIdentifierStart(int cp) {
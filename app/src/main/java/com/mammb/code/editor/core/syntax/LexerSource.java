@@ -16,33 +16,39 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.List;
+import java.util.function.IntPredicate;
 
 /**
  * The lexer source.
+ * <p>
+ * A cursor over the text. Reading methods return the offsets of tokens
+ * instead of substrings, so no object is allocated while reading.
+ * </p>
  * @author Naotsugu Kobayashi
  */
 public class LexerSource {
-    private int row;
-    private String text;
+    private final String text;
     private int index = 0;
     private int peek = 0;
 
-    private LexerSource(int row, String text) {
-        this.row = row;
+    private LexerSource(String text) {
         this.text = text;
     }
 
-    public static LexerSource of(int row, String source) {
-        return new LexerSource(row, source);
+    public static LexerSource of(CharSequence source) {
+        return new LexerSource(source.toString());
     }
 
-    public int row() { return row; }
     public String text() { return text; }
     public int length() { return text.length(); }
 
+    /**
+     * Get the current index.
+     * @return the current index
+     */
+    public int index() { return index; }
+
     public boolean hasNext() {
         return index < text.length();
     }
@@ -51,68 +57,88 @@ public class LexerSource {
         return text.charAt(index) == ch;
     }
 
-    public boolean match(CharSequence cs) {
-        return index + cs.length() < text.length() &&
-                Objects.equals(text.substring(index, index + cs.length()), cs.toString());
+    public boolean match(String str) {
+        return text.regionMatches(index, str, 0, str.length());
     }
 
-    public Indexed next() {
-        var ret = new Indexed(index, text.charAt(index), text.length());
-        index++;
+    /**
+     * Read the next char.
+     * @return the char
+     */
+    public char next() {
         peek = 0;
-        return ret;
+        return text.charAt(index++);
     }
 
-    public Indexed next(int n) {
-        var ret = new Indexed(index, text.substring(index, index + n), text.length());
-        index += n;
+    /**
+     * Skip the next n chars.
+     * @param n the number of chars
+     * @return the start index of the skipped chars
+     */
+    public int next(int n) {
+        int start = index;
+        index = Math.min(index + n, text.length());
         peek = 0;
-        return ret;
+        return start;
     }
 
-    public Indexed nextRemaining() {
-        var ret = new Indexed(index, text.substring(index), text.length());
+    /**
+     * Skip the remaining chars.
+     * @return the start index of the skipped chars
+     */
+    public int nextRemaining() {
+        int start = index;
         index = text.length();
         peek = 0;
-        return ret;
+        return start;
     }
 
-    public Optional<Indexed> nextMatch(String until) {
-        int n = text.substring(index).indexOf(until);
-        if (n < 0) {
-            index = text.length();
-            peek = 0;
-            return Optional.empty();
-        }
-        var ret = new Indexed(index + n, until, text.length());
-        index = ret.index + until.length();
+    /**
+     * Skip to the end of the string.
+     * @param until the string
+     * @return the index of the string, or {@code -1} if not found
+     */
+    public int nextMatch(String until) {
+        int n = text.indexOf(until, index);
+        index = (n < 0) ? text.length() : n + until.length();
         peek = 0;
-        return Optional.of(ret);
+        return n;
     }
 
-    public Indexed peek() {
-        var ret = new Indexed(index + peek, text.charAt(index + peek), text.length());
-        peek++;
-        return ret;
+    /**
+     * Peek the next char.
+     * Each call advances the peek position.
+     * @return the char
+     */
+    public char peek() {
+        return text.charAt(index + peek++);
     }
 
-    public Indexed nextAlphabetic() {
+    public int nextAlphabetic() {
         return nextUntil(Character::isAlphabetic);
     }
 
-    public Indexed nextIdentifierPart() {
+    public int nextIdentifierPart() {
         return nextUntil(Character::isUnicodeIdentifierPart);
     }
 
-    public Indexed nextUntil(Predicate<Character> predicate) {
+    /**
+     * Skip the chars while the predicate is satisfied.
+     * The peek position is kept if no char is skipped.
+     * @param predicate the predicate
+     * @return the start index of the skipped chars
+     */
+    public int nextUntil(IntPredicate predicate) {
+        int start = index;
         int i = index;
         for (; i < text.length(); i++) {
             if (!predicate.test(text.charAt(i))) break;
         }
-        var ret = new Indexed(index, text.substring(index, i), text.length());
-        index = i;
-        peek = 0;
-        return ret;
+        if (i > start) {
+            index = i;
+            peek = 0;
+        }
+        return start;
     }
 
     public LexerSource rollbackPeek() {
@@ -126,57 +152,43 @@ public class LexerSource {
         return this;
     }
 
-    public record Indexed(int index, String string, int parentLength) {
-        private Indexed(int index, char ch, int parentLength) {
-            this(index, String.valueOf(ch), parentLength);
-        }
-        char ch() {
-            return length() == 0 ? 0 : string.charAt(0);
-        }
-        int lastIndex() {
-            return index + string.length() - 1;
-        }
-        int length() { return string.length(); }
-        boolean isFirst() { return index == 0; }
-        boolean isLast() { return index == parentLength - 1; }
-    }
-
-
     Style.StyleSpan readNumberLiteral(Style style) {
-        var open = rollbackPeek().peek();
-        while (hasNext()) {
-            var s = peek();
-            if (!(Character.isDigit(s.ch()) || s.ch() == '.' || s.ch() == 'e' || s.ch() == 'E' || s.ch() == '_')) {
-                return new Style.StyleSpan(style, open.index(), s.index() - open.index());
-            }
-            commitPeek();
+        int open = index;
+        int i = index + 1;
+        for (; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (!(Character.isDigit(ch) || ch == '.' || ch == 'e' || ch == 'E' || ch == '_')) break;
         }
-        return null;
+        index = i;
+        peek = 0;
+        return new Style.StyleSpan(style, open, i - open);
     }
 
     Style.StyleSpan readInlineBlock(char ch, char escape, Style style) {
-        var open = rollbackPeek().peek();
-        char prev = next().ch();
+        int open = index;
+        char prev = next();
         while (hasNext()) {
-            var s = next();
-            if (prev != escape && s.ch() == ch) {
-                return new Style.StyleSpan(style, open.index(), s.index() - open.index() + 1);
+            char c = next();
+            if (prev != escape && c == ch) {
+                return new Style.StyleSpan(style, open, index - open);
             }
-            prev = s.ch();
+            prev = c;
         }
         return null;
     }
 
-    Style.StyleSpan readBlockClose(BlockScopes scopes, BlockScopes.BlockType.Range blockType, Style style) {
-        var open = rollbackPeek().peek();
-        var close = nextMatch(blockType.close());
-        if (close.isPresent()) {
-            var s = close.get();
-            scopes.putClose(row(), s.lastIndex(), blockType);
-            return new Style.StyleSpan(style, open.index(), s.index() + s.length() - open.index());
-        } else {
-            return new Style.StyleSpan(style, open.index(), length() - open.index());
-        }
+    /**
+     * Read until the close of the block, and add the span of the block.
+     * @param blockType the type of block
+     * @param style the style of the block
+     * @param spans the list to which the span is added
+     * @return {@code true}, if the block is closed in this source
+     */
+    boolean readBlockClose(BlockType.Range blockType, Style style, List<Style.StyleSpan> spans) {
+        int open = rollbackPeek().index();
+        boolean closed = nextMatch(blockType.close()) >= 0;
+        spans.add(new Style.StyleSpan(style, open, index - open));
+        return closed;
     }
 
 }
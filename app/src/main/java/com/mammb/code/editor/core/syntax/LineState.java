@@ -0,0 +1,37 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.syntax;
+
+/**
+ * The lexer state at the end of a row.
+ * <p>
+ * A row is lexed from the state at the end of the previous row.
+ * The states are compared with {@code equals}, and an edit stops re-lexing
+ * the rows that follow once their states converge again.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+public interface LineState {
+
+    /** The state outside any block. */
+    LineState NONE = new LineState() {
+        @Override
+        public String toString() {
+            return "NONE";
+        }
+    };
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.syntax;
+
+import java.util.Arrays;
+
+/**
+ * The lexer states at the end of each row.
+ * <p>
+ * The states of the rows before {@link #valid()} are settled, and rows are settled one
+ * by one in order. An edit keeps the states of the rows that follow it, so re-lexing
+ * the edited rows settles all of them again as soon as the state at the end of a row
+ * equals the state kept for it.
+ * </p>
+ * @author Naotsugu Kobayashi
+ */
+public class LineStates {
+
+    /** The end states of the rows. */
+    private LineState[] states = new LineState[256];
+    /** The number of rows whose end state is settled. */
+    private int valid = 0;
+    /** The number of rows that hold an end state, settled or not. */
+    private int known = 0;
+    /** The end row(exclusive) of the rows that must be re-lexed. */
+    private int dirty = 0;
+
+    /**
+     * Get the number of settled rows.
+     * @return the number of settled rows
+     */
+    public int valid() {
+        return valid;
+    }
+
+    /**
+     * Get the state at the start of the row.
+     * @param row the row, not greater than {@link #valid()}
+     * @return the state at the start of the row
+     */
+    public LineState startOf(int row) {
+        assert row <= valid;
+        return (row == 0) ? LineState.NONE : states[row - 1];
+    }
+
+    /**
+     * Settle the end state of the next row.
+     * @param row the row, equal to {@link #valid()}
+     * @param state the state at the end of the row
+     */
+    public void put(int row, LineState state) {
+        assert row == valid;
+        if (row >= states.length) {
+            states = Arrays.copyOf(states, Math.max(row + 1, states.length * 2));
+        }
+        boolean converged = row < known && row + 1 >= dirty && state.equals(states[row]);
+        states[row] = state;
+        if (converged) {
+            valid = known;
+            dirty = 0;
+        } else {
+            valid = row + 1;
+            known = Math.max(known, valid);
+        }
+    }
+
+    /**
+     * Unsettle the edited rows and shift the states of the rows that follow.
+     * @param startRow the start row of the edited rows
+     * @param oldEndRow the end row(exclusive) of the edited rows, before the edit
+     * @param endRow the end row(exclusive) of the edited rows, after the edit
+     */
+    public void edit(int startRow, int oldEndRow, int endRow) {
+        int delta = endRow - oldEndRow;
+        if (dirty <= valid) {
+            // the kept states after the settled rows follow the old state of the last settled row
+            dirty = (valid < known) ? valid + 1 : 0;
+        }
+        if (dirty >= oldEndRow) {
+            dirty += delta;
+        }
+        if (oldEndRow <= known) {
+            LineState last = (oldEndRow == 0) ? LineState.NONE : states[oldEndRow - 1];
+            if (known + delta > states.length) {
+                states = Arrays.copyOf(states, Math.max(known + delta, states.length * 2));
+            }
+            System.arraycopy(states, oldEndRow, states, endRow, known - oldEndRow);
+            if (delta < 0) {
+                Arrays.fill(states, known + delta, known, null);
+            }
+            known += delta;
+            if (endRow > 0) {
+                states[endRow - 1] = last;
+            }
+        } else {
+            known = Math.min(known, startRow);
+        }
+        dirty = Math.max(dirty, endRow);
+        valid = Math.min(valid, startRow);
+    }
+
+    /**
+     * Unsettle all rows.
+     */
+    public void clear() {
+        Arrays.fill(states, null);
+        valid = known = dirty = 0;
+    }
+
+}
@@ -16,11 +16,9 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style;
-import com.mammb.code.editor.core.syntax.BlockScopes.BlockType;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 /**
  * The Markdown syntax.
@@ -28,7 +26,7 @@ import java.util.Optional;
  */
 public class MarkdownSyntax implements Syntax {
 
-    private final BlockScopes scopes = new BlockScopes();
+    private final Map<String, Syntax> fencedSyntaxes = new HashMap<>();
 
     @Override
     public String name() {
@@ -36,33 +34,28 @@ public class MarkdownSyntax implements Syntax {
     }
 
     @Override
-    public List<Style.StyleSpan> apply(int row, String text) {
+    public LineState apply(LineState state, String text, List<Style.StyleSpan> spans) {
 
-        if (text == null || text.isBlank()) {
-            return Collections.emptyList();
-        }
-
-        var spans = new ArrayList<Style.StyleSpan>();
-        var source = LexerSource.of(row, text);
-
-        while (source.hasNext()) {
-
-            var peek = source.peek();
-            char ch = peek.ch();
-            Optional<BlockType> block = scopes.inScope(source.row(), peek.index());
-            Optional<BlockType> fence = block.filter(t -> t.open().startsWith("```"));
+        boolean fenceLine = text != null && text.stripLeading().startsWith("```");
 
-            if (fence.isPresent()) {
-                Syntax syntax = (Syntax) fence.get().attribute();
-                return syntax.apply(row, text);
+        if (state instanceof Fence fence) {
+            if (fenceLine) {
+                return LineState.NONE;
             }
-            if (ch == '`' && source.match("```")) {
-                var s = source.nextRemaining();
-                Syntax syntax = Syntax.of(s.string().substring(3).trim());
-                scopes.putNeutral(source.row(), s.index(), BlockType.neutral("```", syntax));
-            }
-            source.commitPeek();
+            Syntax syntax = fencedSyntaxes.computeIfAbsent(fence.lang(), Syntax::of);
+            return new Fence(fence.lang(), syntax.apply(fence.inner(), text, spans));
+        }
+        if (fenceLine) {
+            return new Fence(text.stripLeading().substring(3).trim(), LineState.NONE);
         }
-        return spans;
+        return state;
     }
+
+    /**
+     * The state in the fenced code block.
+     * @param lang the language of the code block
+     * @param inner the state of the syntax of the code block
+     */
+    private record Fence(String lang, LineState inner) implements LineState { }
+
 }
@@ -16,8 +16,6 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style.StyleSpan;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -39,29 +37,27 @@ public class PythonSyntax implements Syntax {
     }
 
     @Override
-    public List<StyleSpan> apply(int row, String text) {
+    public LineState apply(LineState state, String text, List<StyleSpan> spans) {
         if (text == null || text.isBlank()) {
-            return Collections.emptyList();
+            return state;
         }
-        var spans = new ArrayList<StyleSpan>();
-        var source = LexerSource.of(row, text);
+        var source = LexerSource.of(text);
         while (source.hasNext()) {
-            var peek = source.peek();
-            char ch = peek.ch();
+            char ch = source.peek();
             if (ch == '#') {
-                var s = source.nextRemaining();
-                var span = new StyleSpan(Palette.gray, s.index(), s.length());
+                int start = source.nextRemaining();
+                var span = new StyleSpan(Palette.gray, start, source.index() - start);
                 spans.add(span);
             } else if (isIdentifierStart(ch)) {
-                var s = source.nextIdentifierPart();
-                if (keywords.match(s.string())) {
-                    var span = new StyleSpan(Palette.darkOrange, s.index(), s.length());
+                int start = source.nextIdentifierPart();
+                if (keywords.match(source.text(), start, source.index())) {
+                    var span = new StyleSpan(Palette.darkOrange, start, source.index() - start);
                     spans.add(span);
                 }
             }
             source.commitPeek();
         }
-        return spans;
+        return state;
     }
 
     /**
@@ -16,10 +16,7 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * The rust syntax.
@@ -33,8 +30,7 @@ public class RustSyntax implements Syntax {
         trait,true,type,unsafe,use,where,while,async,await,dyn,try,
         abstract,become,box,do,final,macro,override,priv,typeof,unsized,virtual,yield
         """);
-    static final BlockScopes.BlockType.Range blockComment = BlockScopes.BlockType.range("/*", "*/");
-    private final BlockScopes scopes = new BlockScopes();
+    static final BlockType.Range blockComment = BlockType.range("/*", "*/");
 
     @Override
     public String name() {
@@ -42,37 +38,29 @@ public class RustSyntax implements Syntax {
     }
 
     @Override
-    public List<Style.StyleSpan> apply(int row, String text) {
-
-        scopes.clear(row);
+    public LineState apply(LineState state, String text, List<Style.StyleSpan> spans) {
 
         if (text == null || text.isBlank()) {
-            return Collections.emptyList();
+            return state;
         }
-        var spans = new ArrayList<Style.StyleSpan>();
-        var source = LexerSource.of(row, text);
-
-        while (source.hasNext()) {
 
-            var peek = source.peek();
-            char ch = peek.ch();
-            Optional<BlockScopes.BlockType> block = scopes.inScope(source.row(), peek.index());
+        var source = LexerSource.of(text);
+        if (state == blockComment && !source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+            return state;
+        }
 
-            if (block.filter(t -> t == blockComment).isPresent()) {
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
+        while (source.hasNext()) {
 
-            } else if (ch == '/' && source.match("/*")) {
-                scopes.putOpen(source.row(), peek.index(), blockComment);
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
+            char ch = source.peek();
 
-            } else if (ch == '*' && source.match("*/")) {
-                scopes.putClose(source.row(), peek.index(), blockComment);
+            if (ch == '/' && source.match("/*")) {
+                if (!source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+                    return blockComment;
+                }
 
             } else if (ch == '/' && source.match("//")) {
-                var s = source.nextRemaining();
-                var span = new Style.StyleSpan(Palette.gray, s.index(), s.length());
+                int start = source.nextRemaining();
+                var span = new Style.StyleSpan(Palette.gray, start, source.index() - start);
                 spans.add(span);
 
             } else if (ch == '"' && !source.match("\"\"\"")) {
@@ -84,7 +72,7 @@ public class RustSyntax implements Syntax {
                 if (span != null) spans.add(span);
 
             } else if (ch == ';') {
-                var span = new Style.StyleSpan(Palette.darkOrange, peek.index(), 1);
+                var span = new Style.StyleSpan(Palette.darkOrange, source.index(), 1);
                 spans.add(span);
 
             } else if (Character.isDigit(ch)) {
@@ -92,16 +80,16 @@ public class RustSyntax implements Syntax {
                 if (span != null) spans.add(span);
 
             } else if (isIdentifierStart(ch)) {
-                var s = source.nextIdentifierPart();
-                if (keywords.match(s.string())) {
-                    var span = new Style.StyleSpan(Palette.darkOrange, s.index(), s.length());
+                int start = source.nextIdentifierPart();
+                if (keywords.match(source.text(), start, source.index())) {
+                    var span = new Style.StyleSpan(Palette.darkOrange, start, source.index() - start);
                     spans.add(span);
                 }
             }
             source.commitPeek();
         }
 
-        return spans;
+        return LineState.NONE;
     }
 
 
@@ -16,12 +16,7 @@
 package com.mammb.code.editor.core.syntax;
 
 import com.mammb.code.editor.core.text.Style.StyleSpan;
-import com.mammb.code.editor.core.syntax.BlockScopes.BlockType;
-import com.mammb.code.editor.core.syntax.BlockScopes.BlockType.Range;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * The sql syntax.
@@ -35,8 +30,7 @@ public class SqlSyntax implements Syntax {
         having,in,index,insert,into,is,join,key,left,like,limit,not,null,or,order,outer,
         primary,procedure,replace,right,rownum,select,set,table,top,truncate,union,unique,
         update,values,view,where""");
-    static final Range blockComment = BlockType.range("/*", "*/");
-    private final BlockScopes scopes = new BlockScopes();
+    static final BlockType.Range blockComment = BlockType.range("/*", "*/");
 
     @Override
     public String name() {
@@ -44,40 +38,35 @@ public class SqlSyntax implements Syntax {
     }
 
     @Override
-    public List<StyleSpan> apply(int row, String text) {
-        scopes.clear(row);
+    public LineState apply(LineState state, String text, List<StyleSpan> spans) {
         if (text == null || text.isBlank()) {
-            return Collections.emptyList();
+            return state;
+        }
+
+        var source = LexerSource.of(text);
+        if (state == blockComment && !source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+            return state;
         }
-        var spans = new ArrayList<StyleSpan>();
-        var source = LexerSource.of(row, text);
         while (source.hasNext()) {
-            var peek = source.peek();
-            char ch = peek.ch();
-            Optional<BlockType> block = scopes.inScope(source.row(), peek.index());
-            if (block.filter(t -> t == blockComment).isPresent()) {
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
-            } else if (ch == '/' && source.match("/*")) {
-                scopes.putOpen(source.row(), peek.index(), blockComment);
-                var span = source.readBlockClose(scopes, blockComment, Palette.darkGreen);
-                spans.add(span);
-            } else if (ch == '*' && source.match("*/")) {
-                scopes.putClose(source.row(), peek.index(), blockComment);
+            char ch = source.peek();
+            if (ch == '/' && source.match("/*")) {
+                if (!source.readBlockClose(blockComment, Palette.darkGreen, spans)) {
+                    return blockComment;
+                }
             } else if (ch == '-' && source.match("--")) {
-                var s = source.nextRemaining();
-                var span = new StyleSpan(Palette.gray, s.index(), s.length());
+                int start = source.nextRemaining();
+                var span = new StyleSpan(Palette.gray, start, source.index() - start);
                 spans.add(span);
             } else if (Character.isAlphabetic(ch)) {
-                var s = source.nextIdentifierPart();
-                if (keywords.match(s.string().toLowerCase())) {
-                    var span = new StyleSpan(Palette.darkOrange, s.index(), s.length());
+                int start = source.nextIdentifierPart();
+                if (keywords.matchIgnoreCase(source.text(), start, source.index())) {
+                    var span = new StyleSpan(Palette.darkOrange, start, source.index() - start);
                     spans.add(span);
                 }
             }
             source.commitPeek();
         }
-        return spans;
+        return LineState.NONE;
     }
 
 }
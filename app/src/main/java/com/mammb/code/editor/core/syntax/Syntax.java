@@ -32,11 +32,12 @@ public interface Syntax {
 
     /**
      * Apply syntax highlights
-     * @param row the number of row
+     * @param state the lexer state at the end of the previous row
      * @param text the row text
-     * @return the list of StyleSpan
+     * @param spans the list to which the StyleSpans are added
+     * @return the lexer state at the end of the row
      */
-    List<StyleSpan> apply(int row, String text);
+    LineState apply(LineState state, String text, List<StyleSpan> spans);
 
 
     static Syntax of(String name) {
@@ -53,8 +54,8 @@ public interface Syntax {
 
     record PassThrough(String name) implements Syntax {
         @Override
-        public List<StyleSpan> apply(int row, String text) {
-            return List.of();
+        public LineState apply(LineState state, String text, List<StyleSpan> spans) {
+            return state;
         }
     }
 
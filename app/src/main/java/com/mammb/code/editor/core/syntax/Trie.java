@@ -15,21 +15,45 @@
  */
 package com.mammb.code.editor.core.syntax;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Stream;
 
 /**
  * The Trie.
+ * <p>
+ * The nodes are held in primitive arrays, and the children of a node are linked as
+ * siblings. The children of the root are also indexed by an array for ASCII characters.
+ * A slice of a character sequence can be matched without allocation.
+ * </p>
  * @author Naotsugu Kobayashi
  */
 public class Trie {
 
-    private final TrieNode root;
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    /** The character of each node. */
+    private char[] labels = new char[64];
+    /** The first child of each node. */
+    private int[] children = new int[64];
+    /** The next sibling of each node. */
+    private int[] siblings = new int[64];
+    /** The parent of each node. */
+    private int[] parents = new int[64];
+    /** Whether each node is the end of a word. */
+    private boolean[] ends = new boolean[64];
+    /** The children of the root by ASCII character. */
+    private final int[] rootAscii = new int[128];
+    /** The number of nodes. */
+    private int size = 1;
 
     public Trie() {
-        root = new TrieNode(null);
+        children[ROOT] = NONE;
+        siblings[ROOT] = NONE;
+        parents[ROOT] = NONE;
+        Arrays.fill(rootAscii, NONE);
     }
 
     public static Trie of(String wordSequence) {
@@ -39,118 +63,130 @@ public class Trie {
     }
 
     public void put(String word) {
-        TrieNode node = root;
-        for (int i = 0; i < word.length();) {
-            int cp = word.codePointAt(i);
-            node = node.createIfAbsent(cp);
-            i += Character.charCount(cp);
+        int node = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            node = createIfAbsent(node, word.charAt(i));
         }
-        node.setEndOfWord();
+        ends[node] = true;
     }
 
     public void remove(String word) {
-        TrieNode node = searchPrefix(word);
-        if (node == null || !node.isEndOfWord()) {
+        int node = searchPrefix(word, 0, word.length(), false);
+        if (node == NONE || !ends[node]) {
             return;
         }
-        node.setEndOfWord(false);
-        node.removeIfEmpty();
+        ends[node] = false;
+        while (node != ROOT && children[node] == NONE && !ends[node]) {
+            int parent = parents[node];
+            unlink(parent, node);
+            node = parent;
+        }
     }
 
     public boolean match(String word) {
-        TrieNode node = searchPrefix(word);
-        return node != null && node.isEndOfWord();
+        return match(word, 0, word.length());
+    }
+
+    /**
+     * Get whether the slice of the character sequence is a word.
+     * @param cs the character sequence
+     * @param start the start index of the slice
+     * @param end the end index(exclusive) of the slice
+     * @return {@code true} if the slice is a word
+     */
+    public boolean match(CharSequence cs, int start, int end) {
+        int node = searchPrefix(cs, start, end, false);
+        return node != NONE && ends[node];
+    }
+
+    /**
+     * Get whether the slice of the character sequence is a word, ignoring the case of the slice.
+     * The words are expected to be in lower case.
+     * @param cs the character sequence
+     * @param start the start index of the slice
+     * @param end the end index(exclusive) of the slice
+     * @return {@code true} if the slice is a word
+     */
+    public boolean matchIgnoreCase(CharSequence cs, int start, int end) {
+        int node = searchPrefix(cs, start, end, true);
+        return node != NONE && ends[node];
     }
 
     public boolean startsWith(String prefix) {
-        return searchPrefix(prefix) != null;
+        return searchPrefix(prefix, 0, prefix.length(), false) != NONE;
     }
 
     public List<String> suggestion(String word) {
-        TrieNode node = root;
-        for (int i = 0; i < word.length();) {
-            int cp = word.codePointAt(i);
-            if (node.contains(cp)) {
-                node = node.get(cp);
-            } else {
-                break;
-            }
-            i += Character.charCount(cp);
+        int node = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            int child = child(node, word.charAt(i));
+            if (child == NONE) break;
+            node = child;
         }
-        return node.childKeys();
+        List<String> keys = new ArrayList<>();
+        for (int child = children[node]; child != NONE; child = siblings[child]) {
+            keys.add(String.valueOf(labels[child]));
+        }
+        return keys;
     }
 
-    private TrieNode searchPrefix(String word) {
-        TrieNode node = root;
-        for (int i = 0; i < word.length();) {
-            int cp = word.codePointAt(i);
-            if (node.contains(cp)) {
-                node = node.get(cp);
-            } else {
-                return null;
-            }
-            i += Character.charCount(cp);
+    private int searchPrefix(CharSequence cs, int start, int end, boolean ignoreCase) {
+        int node = ROOT;
+        for (int i = start; i < end && node != NONE; i++) {
+            char ch = cs.charAt(i);
+            node = child(node, ignoreCase ? Character.toLowerCase(ch) : ch);
         }
         return node;
     }
 
-    class TrieNode {
-
-        private final TrieNode parent;
-        private final Map<Integer, TrieNode> children;
-        private boolean endOfWord;
-
-        TrieNode(TrieNode parent) {
-            this.parent = parent;
-            this.children = new HashMap<>();
-        }
-
-        TrieNode createIfAbsent(Integer key) {
-            return children.computeIfAbsent(key, k -> new TrieNode(this));
+    private int child(int node, char ch) {
+        if (node == ROOT && ch < 128) {
+            return rootAscii[ch];
         }
-
-        boolean contains(int codePoint) {
-            return children.containsKey(codePoint);
-        }
-
-        TrieNode get(int codePoint) {
-            return children.get(codePoint);
+        int child = children[node];
+        while (child != NONE && labels[child] != ch) {
+            child = siblings[child];
         }
+        return child;
+    }
 
-        void put(int codePoint, TrieNode node) {
-            children.put(codePoint, node);
+    private int createIfAbsent(int node, char ch) {
+        int child = child(node, ch);
+        if (child != NONE) return child;
+        if (size == labels.length) {
+            int capacity = size * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            children = Arrays.copyOf(children, capacity);
+            siblings = Arrays.copyOf(siblings, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            ends = Arrays.copyOf(ends, capacity);
         }
-
-        void removeIfEmpty() {
-            if (parent == null) {
-                return;
-            }
-            if (children.isEmpty()) {
-                parent.children.remove(key());
-                parent.removeIfEmpty();
-            }
+        child = size++;
+        labels[child] = ch;
+        children[child] = NONE;
+        siblings[child] = children[node];
+        parents[child] = node;
+        ends[child] = false;
+        children[node] = child;
+        if (node == ROOT && ch < 128) {
+            rootAscii[ch] = child;
         }
+        return child;
+    }
 
-        private Integer key() {
-            if (parent == null) {
-                return null;
+    private void unlink(int parent, int node) {
+        if (children[parent] == node) {
+            children[parent] = siblings[node];
+        } else {
+            int prev = children[parent];
+            while (siblings[prev] != node) {
+                prev = siblings[prev];
             }
-            return parent.children.entrySet().stream()
-                    .filter(e -> e.getValue() == this)
-                    .findFirst()
-                    .map(Map.Entry::getKey)
-                    .orElse(null);
+            siblings[prev] = siblings[node];
         }
-
-        List<String> childKeys() {
-            return children.keySet().stream().map(Character::toString).toList();
+        if (parent == ROOT && labels[node] < 128) {
+            rootAscii[labels[node]] = NONE;
         }
-
-        void setEndOfWord() { endOfWord = true; }
-
-        void setEndOfWord(boolean endOfWord) { this.endOfWord = endOfWord; }
-
-        boolean isEndOfWord() { return endOfWord; }
     }
 
 }
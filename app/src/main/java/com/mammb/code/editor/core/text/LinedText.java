@@ -30,6 +30,8 @@ public interface LinedText extends Text {
             @Override public double[] advances() { return peer.advances(); }
             @Override public double width() { return peer.width(); }
             @Override public double height() { return peer.height(); }
+            @Override public double widthTo(int index) { return peer.widthTo(index); }
+            @Override public int indexTo(double width) { return peer.indexTo(width); }
             @Override public int line() { return line; }
         }
         return new LinedTextRecord(line, text);
@@ -27,6 +27,46 @@ public interface RowText extends LinedText {
         return row();
     }
 
+    /**
+     * Get the cumulative widths of the text.
+     * @return the array whose i-th element is the width of the first i chars
+     */
+    double[] prefixWidths();
+
+    @Override
+    default double widthTo(int index) {
+        double[] prefix = prefixWidths();
+        return prefix[Math.clamp(index, 0, prefix.length - 1)];
+    }
+
+    @Override
+    default int indexTo(double width) {
+        int index = indexTo(0, length(), width);
+        return (index == length()) ? Math.min(index, textLength()) : index;
+    }
+
+    /**
+     * Get the index of the first char that crosses the width, in the range of the text.
+     * @param fromIndex the start index of the range
+     * @param toIndex the end index(exclusive) of the range
+     * @param width the width from the start of the range
+     * @return the index of the char, or {@code toIndex} if no char crosses the width
+     */
+    default int indexTo(int fromIndex, int toIndex, double width) {
+        double[] prefix = prefixWidths();
+        double target = prefix[fromIndex] + width;
+        int low = fromIndex, high = toIndex;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefix[mid + 1] > target) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
     static RowText of(int row, String text, FontMetrics fm) {
         double width = 0;
         double[] advances = new double[text.length()];
@@ -43,11 +83,26 @@ public interface RowText extends LinedText {
                 width += advances[i] = fm.getAdvance(ch1);
             }
         }
-        return new RowTextRecord(row, text, advances, width, fm.getLineHeight());
+        double[] prefix = new double[advances.length + 1];
+        for (int i = 0; i < advances.length; i++) {
+            prefix[i + 1] = prefix[i] + advances[i];
+        }
+        return new RowTextRecord(row, text, advances, prefix, width, fm.getLineHeight(), WordIndex.of(text));
+    }
+
+    /**
+     * Create a row text that shares the measured advances of the source text on the other row.
+     * @param row the number of row
+     * @param source the source row text
+     * @return the row text
+     */
+    static RowText of(int row, RowText source) {
+        return new RowTextRecord(row, source.value(), source.advances(), source.prefixWidths(),
+                source.width(), source.height(), source.wordIndex());
     }
 
-    record RowTextRecord(int row, String value, double[] advances, double width, double height)
-            implements RowText {
+    record RowTextRecord(int row, String value, double[] advances, double[] prefixWidths,
+            double width, double height, WordIndex wordIndex) implements RowText {
     }
 
 }
@@ -18,10 +18,7 @@ package com.mammb.code.editor.core.text;
 import com.mammb.code.editor.core.text.Style.StyleSpan;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * The styled text.
@@ -37,8 +34,8 @@ public interface StyledText extends Text {
 
     class Builder {
         private final Text text;
-        private final Set<Integer> bounds = new HashSet<>();
-        private final List<Style.StyleSpan> spans = new ArrayList<>();
+        private StyleSpan[] spans = new StyleSpan[16];
+        private int size = 0;
 
         private Builder(Text text) {
             this.text = text;
@@ -50,9 +47,11 @@ public interface StyledText extends Text {
         }
 
         public Builder put(StyleSpan span) {
-            bounds.add(span.offset());
-            bounds.add(span.offset() + span.length());
-            spans.add(span);
+            if (span.length() <= 0) return this;
+            if (size == spans.length) {
+                spans = Arrays.copyOf(spans, size * 2);
+            }
+            spans[size++] = span;
             return this;
         }
 
@@ -60,46 +59,82 @@ public interface StyledText extends Text {
             return put(new StyleSpan(style, offset, length));
         }
 
+        /**
+         * Build the styled runs.
+         * The spans are sorted by their edges, and the runs are built in a single sweep.
+         * @return the styled runs
+         */
         public List<StyledText> build() {
-            return (text instanceof SubText sub)
-                    ? apply(sub, sub.fromIndex(), sub.toIndex())
-                    : apply(text, 0, text.length());
-        }
-
-        private List<StyledText> apply(Text text, int from, int to) {
-            List<Integer> list = bounds.stream()
-                    .filter(i -> from <= i && i <= to)
-                    .sorted()
-                    .collect(Collectors.toList());
-            if (list.isEmpty()) {
+            if (size == 0) {
                 return List.of(new StyledTextWhole(text, List.of()));
             }
-            if (list.getFirst() != from) {
-                list.addFirst(from);
+            Text peer = text;
+            int base = 0;
+            if (text instanceof SubText sub) {
+                peer = sub.parent();
+                base = sub.fromIndex();
             }
-            if (list.getLast() != to) {
-                list.addLast(to);
+            int length = text.length();
+
+            int[] starts = new int[size];
+            int[] ends = new int[size];
+            int[] bounds = new int[size * 2 + 2];
+            long[] order = new long[size];
+            int n = 0;
+            bounds[n++] = 0;
+            bounds[n++] = length;
+            for (int i = 0; i < size; i++) {
+                starts[i] = Math.clamp(spans[i].offset(), 0, length);
+                ends[i] = Math.clamp((long) spans[i].offset() + spans[i].length(), starts[i], length);
+                bounds[n++] = starts[i];
+                bounds[n++] = ends[i];
+                order[i] = ((long) starts[i] << 32) | i;
+            }
+            Arrays.sort(bounds, 0, n);
+            Arrays.sort(order);
+            int m = 1;
+            for (int i = 1; i < n; i++) {
+                if (bounds[i] != bounds[m - 1]) {
+                    bounds[m++] = bounds[i];
+                }
             }
 
-            List<StyledText> ret = new ArrayList<>();
-            for (int i = 0; i < list.size() - 1; i++) {
-                int start = list.get(i);
-                int end   = list.get(i + 1);
-                ret.add(new StyledTextPart(text, start, end, styles(list.get(i))));
+            double[] advances = peer.advances();
+            int[] active = new int[size];
+            int activeSize = 0;
+            int next = 0;
+            List<StyledText> ret = new ArrayList<>(m - 1);
+            for (int b = 0; b < m - 1; b++) {
+                int start = bounds[b];
+                int end = bounds[b + 1];
+                int k = 0;
+                for (int j = 0; j < activeSize; j++) {
+                    if (ends[active[j]] > start) active[k++] = active[j];
+                }
+                activeSize = k;
+                for (; next < size && (int) (order[next] >>> 32) <= start; next++) {
+                    int index = (int) order[next];
+                    if (ends[index] <= start) continue;
+                    int j = activeSize++;
+                    for (; j > 0 && active[j - 1] > index; j--) {
+                        active[j] = active[j - 1];
+                    }
+                    active[j] = index;
+                }
+                Style[] styles = new Style[activeSize];
+                for (int j = 0; j < activeSize; j++) {
+                    styles[j] = spans[active[j]].style();
+                }
+                double width = 0;
+                for (int i = base + start; i < base + end; i++) {
+                    width += advances[i];
+                }
+                ret.add(new StyledTextPart(peer, base + start, base + end, width, List.of(styles)));
             }
             return ret;
         }
-
-        private List<Style> styles(int index) {
-            return spans.stream()
-                    .filter(span -> span.offset() <= index && index < (span.offset() + span.length()))
-                    .map(StyleSpan::style)
-                    .toList();
-        }
     }
 
-
-
     class StyledTextWhole implements StyledText {
         private final Text peer;
         private final List<Style> styles;
@@ -133,15 +168,21 @@ public interface StyledText extends Text {
         }
     }
 
+    /**
+     * The part of the peer text.
+     * The part refers to the string and advances of the peer text without copying them.
+     */
     class StyledTextPart implements StyledText {
         private final Text peer;
         private final int start;
         private final int end;
+        private final double width;
         private final List<Style> styles;
-        public StyledTextPart(Text peer, int start, int end, List<Style> styles) {
+        public StyledTextPart(Text peer, int start, int end, double width, List<Style> styles) {
             this.peer = peer;
             this.start = start;
             this.end = end;
+            this.width = width;
             this.styles = styles;
         }
         @Override
@@ -158,7 +199,11 @@ public interface StyledText extends Text {
         }
         @Override
         public double width() {
-            return Arrays.stream(peer.advances(), start, end).sum();
+            return width;
+        }
+        @Override
+        public int length() {
+            return end - start;
         }
         @Override
         public double height() {
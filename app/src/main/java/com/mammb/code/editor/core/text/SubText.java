@@ -59,8 +59,8 @@ public interface SubText extends Text {
             if (advance <= 0) continue;
             if (w + advance > width) {
                 var sub = new SubTextRecord(rowText, fromIndex, i, w, prev);
-                if (subs.getLast() != null) {
-                    ((SubTextRecord) subs.getLast()).next = sub;
+                if (prev != null) {
+                    ((SubTextRecord) prev).next = sub;
                 }
                 subs.add(sub);
                 prev = sub;
@@ -70,8 +70,8 @@ public interface SubText extends Text {
             w += advance;
         }
         var sub = new SubTextRecord(rowText, fromIndex, rowText.length(), w, prev);
-        if (subs.getLast() != null) {
-            ((SubTextRecord) subs.getLast()).next = sub;
+        if (prev != null) {
+            ((SubTextRecord) prev).next = sub;
         }
         subs.add(sub);
         return subs;
@@ -104,6 +104,19 @@ public interface SubText extends Text {
         @Override
         public double height() { return parent.height(); }
         @Override
+        public int length() { return toIndex - fromIndex; }
+        @Override
+        public int textLength() { return Math.max(0, Math.min(toIndex, parent.textLength()) - fromIndex); }
+        @Override
+        public double widthTo(int index) {
+            return parent.widthTo(fromIndex + Math.clamp(index, 0, length())) - parent.widthTo(fromIndex);
+        }
+        @Override
+        public int indexTo(double width) {
+            int index = parent.indexTo(fromIndex, toIndex, width) - fromIndex;
+            return (index == length()) ? Math.min(index, textLength()) : index;
+        }
+        @Override
         public int fromIndex() { return fromIndex; }
         @Override
         public int toIndex() { return toIndex; }
@@ -15,10 +15,7 @@
  */
 package com.mammb.code.editor.core.text;
 
-import java.text.BreakIterator;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * The Text.
@@ -92,22 +89,12 @@ public interface Text {
         return value().isEmpty();
     }
 
-    default List<Text> words() {
-        List<Text> ret = new ArrayList<>();
-        var text = value();
-        BreakIterator boundary = BreakIterator.getWordInstance();
-        boundary.setText(text);
-        int start = boundary.first();
-        for (int end = boundary.next();
-             end != BreakIterator.DONE;
-             start = end, end = boundary.next()) {
-            ret.add(Text.of(
-                    row(),
-                    text.substring(start, end),
-                    Arrays.copyOfRange(advances(), start, end),
-                    height()));
-        }
-        return ret;
+    /**
+     * Get the word boundaries of the text.
+     * @return the word boundaries
+     */
+    default WordIndex wordIndex() {
+        return WordIndex.of(value());
     }
 
     static Text of(int row, String value, double[] advances, double height) {
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.text;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+
+/**
+ * The word boundaries of a text.
+ * The boundaries are computed on first use, and held as an int array.
+ * @author Naotsugu Kobayashi
+ */
+public class WordIndex {
+
+    private final String text;
+    private int[] boundaries;
+
+    private WordIndex(String text) {
+        this.text = text;
+    }
+
+    public static WordIndex of(String text) {
+        return new WordIndex(text);
+    }
+
+    /**
+     * Get the start index of the word at the index.
+     * @param index the index
+     * @return the start index of the word
+     */
+    public int start(int index) {
+        int[] b = boundaries();
+        int i = Arrays.binarySearch(b, index);
+        return (i >= 0) ? b[i] : b[Math.max(0, -i - 2)];
+    }
+
+    /**
+     * Get the end index(exclusive) of the word at the index.
+     * @param index the index
+     * @return the end index of the word
+     */
+    public int end(int index) {
+        int[] b = boundaries();
+        int i = Arrays.binarySearch(b, index);
+        int next = (i >= 0) ? i + 1 : -i - 1;
+        return (next < b.length) ? b[next] : text.length();
+    }
+
+    private int[] boundaries() {
+        if (boundaries == null) {
+            BreakIterator it = BreakIterator.getWordInstance();
+            it.setText(text);
+            int[] b = new int[16];
+            int n = 0;
+            for (int i = it.first(); i != BreakIterator.DONE; i = it.next()) {
+                if (n == b.length) b = Arrays.copyOf(b, n * 2);
+                b[n++] = i;
+            }
+            boundaries = Arrays.copyOf(b, n);
+        }
+        return boundaries;
+    }
+
+}
@@ -20,6 +20,9 @@ import javafx.scene.Node;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.DialogPane;
 import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.stage.StageStyle;
 
 import static javafx.scene.input.KeyCode.ENTER;
@@ -28,13 +31,18 @@ import static javafx.scene.input.KeyCode.ESCAPE;
 public class CommandPalette extends Dialog<CommandPalette.Command> {
 
     private final TextField textField = new TextField();
+    private final ToggleButton regex = new ToggleButton(".*");
+    private final ToggleButton ignoreCase = new ToggleButton("Aa");
 
     public CommandPalette(Node node) {
         super();
         initOwner(node.getScene().getWindow());
         initStyle(StageStyle.TRANSPARENT);
         DialogPane pane = getDialogPane();
-        pane.setContent(textField);
+        HBox.setHgrow(textField, Priority.ALWAYS);
+        regex.setFocusTraversable(false);
+        ignoreCase.setFocusTraversable(false);
+        pane.setContent(new HBox(textField, regex, ignoreCase));
         pane.setPadding(Insets.EMPTY);
 
         var bounds = node.localToScreen(node.getBoundsInLocal());
@@ -50,7 +58,7 @@ public class CommandPalette extends Dialog<CommandPalette.Command> {
                 if (textField.getText().isBlank()) {
                     setResult(new Empty());
                 } else {
-                    setResult(new FindAll(textField.getText()));
+                    setResult(new FindAll(textField.getText(), regex.isSelected(), ignoreCase.isSelected()));
                     close();
                     e.consume();
                 }
@@ -65,6 +73,6 @@ public class CommandPalette extends Dialog<CommandPalette.Command> {
 
     interface Command {}
     record Empty() implements Command {}
-    record FindAll(String text) implements Command {}
+    record FindAll(String text, boolean regex, boolean ignoreCase) implements Command {}
 
 }
@@ -16,12 +16,17 @@
 package com.mammb.code.editor.fx;
 
 import com.mammb.code.editor.core.Action;
+import com.mammb.code.editor.core.Content;
 import com.mammb.code.editor.core.EditorModel;
 import com.mammb.code.editor.core.Draw;
 import com.mammb.code.editor.core.ScreenScroll;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Task;
 import javafx.geometry.Bounds;
 import javafx.geometry.Orientation;
 import javafx.geometry.Point2D;
@@ -51,10 +56,14 @@ import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.util.Duration;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 /**
@@ -63,6 +72,9 @@ import java.util.stream.Collectors;
  */
 public class EditorPane extends StackPane {
 
+    /** The executor of file loading and saving. */
+    private static final Executor EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     /** The canvas. */
     private final Canvas canvas;
     /** The draw. */
@@ -75,6 +87,16 @@ public class EditorPane extends StackPane {
     private final ScrollBar hScroll = new ScrollBar();
     /** The file name property. */
     private final SimpleStringProperty fileNameProperty = new SimpleStringProperty("Untitled");
+    /** The render scheduler. */
+    private final RenderScheduler scheduler = new RenderScheduler(this::paint);
+    /** The number of lines scrolled since the last draw. */
+    private int scrollDelta = 0;
+    /** Whether to scroll to the caret before the next draw. */
+    private boolean syncCaret = false;
+    /** The task loading the content, the model is a read-only placeholder while loading. */
+    private Task<Content> loading;
+    /** The timeline that draws the rows appended to the followed file. */
+    private final Timeline follower = new Timeline(new KeyFrame(Duration.millis(250), e -> draw()));
 
     private Consumer<Path> newOpenHandler;
 
@@ -87,9 +109,7 @@ public class EditorPane extends StackPane {
         canvas.setManaged(false);
         canvas.setFocusTraversable(true);
         draw = new FxDraw(canvas.getGraphicsContext2D());
-        model = (path == null)
-                ? EditorModel.of(draw.fontMetrics(), screenScroll())
-                : EditorModel.of(path, draw.fontMetrics(), screenScroll());
+        model = EditorModel.of(draw.fontMetrics(), screenScroll());
         vScroll.setOrientation(Orientation.VERTICAL);
         hScroll.setOrientation(Orientation.HORIZONTAL);
         StackPane.setAlignment(vScroll, Pos.TOP_RIGHT);
@@ -110,12 +130,12 @@ public class EditorPane extends StackPane {
         hScroll.valueProperty().addListener(this::handleHorizontalScroll);
         canvas.setInputMethodRequests(inputMethodRequests());
         canvas.setOnInputMethodTextChanged(this::handleInputMethodTextChanged);
-        canvas.focusedProperty().addListener((ob, o, n) -> {
-            model.setCaretVisible(n);
-            draw();
-        });
+        canvas.focusedProperty().addListener((ob, o, n) -> perform(() -> model.setCaretVisible(n)));
+        follower.setCycleCount(Animation.INDEFINITE);
 
-        fileNameProperty.setValue((path == null) ? "Untitled" : path.getFileName().toString());
+        if (path != null) {
+            open(path);
+        }
     }
 
     public ReadOnlyStringProperty fileNameProperty() {
@@ -134,42 +154,50 @@ public class EditorPane extends StackPane {
             ObservableValue<? extends Bounds> ob, Bounds o, Bounds n) {
         canvas.setWidth(n.getWidth());
         canvas.setHeight(n.getHeight());
-        model.setSize(n.getWidth(), n.getHeight());
-        draw();
+        perform(() -> model.setSize(n.getWidth(), n.getHeight()));
     }
 
     private void handleScroll(ScrollEvent e) {
         if (e.getEventType() == ScrollEvent.SCROLL && e.getDeltaY() != 0) {
-            if (e.getDeltaY() < 0) {
-                model.scrollNext((int) Math.min(5, Math.abs(e.getDeltaY())));
-            } else {
-                model.scrollPrev((int) Math.min(5, e.getDeltaY()));
+            if (scrollDelta == 0) {
+                scheduler.enqueue(this::applyScroll);
             }
-            draw();
+            scrollDelta += (e.getDeltaY() < 0)
+                    ? (int) Math.min(5, Math.abs(e.getDeltaY()))
+                    : -(int) Math.min(5, e.getDeltaY());
+        }
+    }
+
+    private void applyScroll() {
+        if (scrollDelta > 0) {
+            model.scrollNext(scrollDelta);
+        } else if (scrollDelta < 0) {
+            model.scrollPrev(-scrollDelta);
         }
+        scrollDelta = 0;
     }
 
     private void handleMouseClicked(MouseEvent e) {
         if (e.getButton() == MouseButton.PRIMARY && e.getTarget() == canvas) {
+            double x = e.getX(), y = e.getY();
             switch (e.getClickCount()) {
                 case 1 -> {
                     if (e.isShortcutDown()) {
-                        model.ctrlClick(e.getX(), e.getY());
+                        perform(() -> model.ctrlClick(x, y));
                     } else {
-                        model.click(e.getX(), e.getY(), false);
+                        perform(() -> model.click(x, y, false));
                     }
                 }
-                case 2 -> model.clickDouble(e.getX(), e.getY());
-                case 3 -> model.clickTriple(e.getX(), e.getY());
+                case 2 -> perform(() -> model.clickDouble(x, y));
+                case 3 -> perform(() -> model.clickTriple(x, y));
             }
-            draw();
         }
     }
 
     private void handleMouseDragged(MouseEvent e) {
         if (e.getButton() == MouseButton.PRIMARY) {
-            model.moveDragged(e.getX(), e.getY());
-            model.draw(draw);
+            double x = e.getX(), y = e.getY();
+            perform(() -> model.moveDragged(x, y));
         }
     }
 
@@ -188,7 +216,7 @@ public class EditorPane extends StackPane {
 
     private void handleDragDropped(DragEvent e) {
         Dragboard board = e.getDragboard();
-        if (board.hasFiles()) {
+        if (board.hasFiles() && !scheduler.isHeld()) {
             var path = board.getFiles().stream().map(File::toPath)
                     .filter(Files::isReadable).filter(Files::isRegularFile).findFirst();
             if (path.isPresent()) {
@@ -196,7 +224,6 @@ public class EditorPane extends StackPane {
                 e.setDropCompleted(true);
                 e.consume();
                 open(path.get());
-                draw();
                 return;
             }
         }
@@ -204,35 +231,72 @@ public class EditorPane extends StackPane {
     }
 
     private void handleVerticalScroll(ObservableValue<? extends Number> ob, Number o, Number n) {
-        model.scrollAt(n.intValue());
-        draw();
+        perform(() -> model.scrollAt(n.intValue()));
     }
 
     private void handleHorizontalScroll(ObservableValue<? extends Number> ob, Number o, Number n) {
-        model.scrollX(n.doubleValue());
-        draw();
+        perform(() -> model.scrollX(n.doubleValue()));
     }
 
     private void handleInputMethodTextChanged(InputMethodEvent e) {
-        if (!e.getCommitted().isEmpty()) {
-            model.imeOff();
-            execute(Action.of(Action.Type.TYPED, e.getCommitted()));
-        } else if (!e.getComposed().isEmpty()) {
-            if (!model.isImeOn()) model.imeOn();
-            model.inputImeComposed(e.getComposed().stream()
-                    .map(InputMethodTextRun::getText)
-                    .collect(Collectors.joining()));
-            model.draw(draw);
+        if (loading != null) return;
+        String committed = e.getCommitted();
+        String composed = e.getComposed().stream()
+                .map(InputMethodTextRun::getText)
+                .collect(Collectors.joining());
+        perform(() -> {
+            if (!committed.isEmpty()) {
+                model.imeOff();
+                execute(Action.of(Action.Type.TYPED, committed));
+            } else if (!composed.isEmpty()) {
+                if (!model.isImeOn()) model.imeOn();
+                model.inputImeComposed(composed);
+            } else {
+                model.inputImeComposed("");
+                model.imeOff();
+            }
+        });
+    }
+
+    private Action execute(Action action) {
+        if (model.isImeOn()) return Action.EMPTY;
+        if (loading != null) {
+            switch (action.type()) {
+                case ESC -> cancelLoading();
+                case OPEN, NEW -> apply(action);
+                default -> { return Action.EMPTY; }
+            }
+            return action;
+        }
+        if (model.isReadOnly() && action.type().edit() && action.type() != Action.Type.CUT) {
+            return Action.EMPTY;
+        }
+        if (action.type().moveCaret()) {
+            scheduler.enqueue(() -> apply(action));
+            syncCaret = true;
         } else {
-            model.inputImeComposed("");
-            model.imeOff();
+            perform(() -> {
+                apply(action);
+                if (action.type().syncCaret()) {
+                    model.scrollToCaret();
+                }
+            });
         }
         draw();
+        return action;
     }
 
-    private Action execute(Action action) {
-        if (model.isImeOn()) return Action.EMPTY;
+    /**
+     * Run the task on the model, in order after the queued tasks.
+     * While saving, the task is held until the save completes.
+     * @param task the task
+     */
+    private void perform(Runnable task) {
+        scheduler.enqueue(task);
+        scheduler.runPending();
+    }
 
+    private void apply(Action action) {
         switch (action.type()) {
             case TYPED -> model.input(action.attr());
             case DELETE -> model.delete();
@@ -262,12 +326,9 @@ public class EditorPane extends StackPane {
             case SAVE_AS -> saveAs();
             case NEW -> newEdit();
             case FIND -> find();
+            case FOLLOW -> follow();
+            case WRAP -> model.wrap();
         }
-        if (action.type().syncCaret()) {
-            model.scrollToCaret();
-        }
-        draw();
-        return action;
     }
 
     private ScreenScroll screenScroll() {
@@ -295,7 +356,27 @@ public class EditorPane extends StackPane {
     }
 
     private void draw() {
+        scheduler.request();
+    }
+
+    private void paint() {
+        if (syncCaret) {
+            model.scrollToCaret();
+            syncCaret = false;
+        }
         model.draw(draw);
+        if (model.progress() < 1.0) {
+            // keep drawing while the content is loaded in the background
+            scheduler.request();
+        }
+    }
+
+    /**
+     * Get the frame statistics of this pane.
+     * @return the frame statistics
+     */
+    public RenderScheduler.FrameStats frameStats() {
+        return scheduler.stats();
     }
 
     private void openWithChooser() {
@@ -314,9 +395,57 @@ public class EditorPane extends StackPane {
     }
 
     private void open(Path path) {
-        model = EditorModel.of(path, draw.fontMetrics(), screenScroll());
+        cancelLoading();
+        follower.stop();
+        scheduler.runPending();
+        syncCaret = false;
+        boolean readOnly = Content.isLarge(path) && confirmReadOnly(path);
+        model = EditorModel.of(draw.fontMetrics(), screenScroll());
         model.setSize(getWidth(), getHeight());
         fileNameProperty.setValue(path.getFileName().toString());
+
+        var task = new Task<Content>() {
+            @Override
+            protected Content call() {
+                return readOnly ? Content.readOnlyOf(path) : Content.of(path);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (loading != task) return;
+            loading = null;
+            model = EditorModel.of(task.getValue(), draw.fontMetrics(), screenScroll());
+            model.setSize(getWidth(), getHeight());
+            fileNameProperty.setValue(fileName(path));
+            draw();
+        });
+        task.setOnFailed(e -> {
+            if (loading != task) return;
+            loading = null;
+            fileNameProperty.setValue("Untitled");
+            showError("Failed to open " + path.getFileName(), task.getException());
+        });
+        loading = task;
+        EXECUTOR.execute(task);
+        draw();
+    }
+
+    private boolean confirmReadOnly(Path path) {
+        var owner = (getScene() == null) ? null : getScene().getWindow();
+        var result = FxDialog.confirmation(owner,
+                path.getFileName() + " is a large file. Open it read-only?").showAndWait();
+        return (result.isPresent() && result.get() == ButtonType.OK);
+    }
+
+    private String fileName(Path path) {
+        String name = path.getFileName().toString();
+        return model.isReadOnly() ? name + " [read-only]" : name;
+    }
+
+    private void cancelLoading() {
+        if (loading == null) return;
+        loading.cancel();
+        loading = null;
+        fileNameProperty.setValue("Untitled");
     }
 
     private boolean canDiscardCurrent() {
@@ -331,12 +460,40 @@ public class EditorPane extends StackPane {
 
     private void save() {
         if (model.path().isPresent()) {
-            model.save(model.path().get());
+            save(model.path().get());
         } else {
             saveAs();
         }
     }
 
+    private void save(Path path) {
+        // the content is not thread safe, nothing touches the model until the save completes,
+        // the actions made while saving, including another save, are applied after it
+        scheduler.hold();
+        EditorModel target = model;
+        var task = new Task<Void>() {
+            @Override
+            protected Void call() {
+                target.save(path);
+                return null;
+            }
+        };
+        task.setOnSucceeded(e -> {
+            fileNameProperty.setValue(fileName(path));
+            scheduler.release();
+        });
+        task.setOnFailed(e -> {
+            scheduler.release();
+            showError("Failed to save " + path.getFileName(), task.getException());
+        });
+        EXECUTOR.execute(task);
+    }
+
+    private void showError(String text, Throwable e) {
+        var owner = (getScene() == null) ? null : getScene().getWindow();
+        FxDialog.error(owner, (e == null) ? text : text + "\n" + e.getMessage()).show();
+    }
+
     private void saveAs() {
         FileChooser fc = new FileChooser();
         fc.setTitle("Save As...");
@@ -345,9 +502,7 @@ public class EditorPane extends StackPane {
                 : Path.of(System.getProperty("user.home")).toFile());
         File file = fc.showSaveDialog(getScene().getWindow());
         if (file == null) return;
-        Path path = file.toPath();
-        model.save(path);
-        fileNameProperty.setValue(path.getFileName().toString());
+        save(file.toPath());
     }
 
     private void newEdit() {
@@ -368,12 +523,27 @@ public class EditorPane extends StackPane {
         stage.show();
     }
 
+    private void follow() {
+        model.follow();
+        if (model.isFollowing()) {
+            follower.play();
+        } else {
+            follower.stop();
+        }
+    }
+
     private void find() {
         var cp = new CommandPalette(this);
         var command = cp.showAndWait();
         command.ifPresent(c -> {
             switch (c) {
-                case CommandPalette.FindAll findAll -> model.findAll(findAll.text());
+                case CommandPalette.FindAll findAll -> {
+                    try {
+                        model.findAll(findAll.text(), findAll.regex(), findAll.ignoreCase());
+                    } catch (PatternSyntaxException e) {
+                        showError("Invalid regular expression", e);
+                    }
+                }
                 default -> {}
             }
         });
@@ -383,12 +553,13 @@ public class EditorPane extends StackPane {
         return new InputMethodRequests() {
             @Override
             public Point2D getTextLocation(int i) {
+                if (scheduler.isHeld()) return null;
                 return model.imeOn()
                         .map(loc -> canvas.localToScreen(loc.x(), loc.y()))
                         .orElse(null);
             }
             @Override
-            public void cancelLatestCommittedText() { model.imeOff(); }
+            public void cancelLatestCommittedText() { perform(() -> model.imeOff()); }
             @Override
             public int getLocationOffset(int x, int y) { return 0; }
             @Override
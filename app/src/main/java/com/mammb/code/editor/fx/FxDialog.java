@@ -51,4 +51,8 @@ public class FxDialog extends Dialog<ButtonType> {
         return new FxDialog(owner, "Confirmation", text, ButtonType.CANCEL, ButtonType.OK);
     }
 
+    public static FxDialog error(Window owner, String text) {
+        return new FxDialog(owner, "Error", text, ButtonType.CLOSE);
+    }
+
 }
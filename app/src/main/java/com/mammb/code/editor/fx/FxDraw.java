@@ -26,7 +26,6 @@ import javafx.scene.text.Font;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * The draw.
@@ -36,6 +35,16 @@ public class FxDraw implements Draw {
     private final GraphicsContext gc;
     private final FontMetrics fontMetrics;
     private final Map<String, Color> colors = new HashMap<>();
+    /** The resolved paints for each combination of styles. */
+    private final Map<List<Style>, Paint> paints = new HashMap<>();
+    /** The current fill color of the graphics context. */
+    private Color fill;
+    /** The current stroke color of the graphics context. */
+    private Color stroke;
+    /** The pending text run, which is extended by adjacent texts with the same paint. */
+    private final StringBuilder run = new StringBuilder();
+    private double runX, runY, runWidth;
+    private Paint runPaint;
 
     public FxDraw(GraphicsContext gc) {
         this.gc = gc;
@@ -46,61 +55,98 @@ public class FxDraw implements Draw {
 
     @Override
     public void clear() {
+        run.setLength(0);
+        runPaint = null;
         Canvas canvas = gc.getCanvas();
         gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
     }
 
+    @Override
+    public void clear(double x, double y, double w, double h) {
+        flush();
+        gc.clearRect(x, y, w, h);
+    }
+
     @Override
     public void text(String text, double x, double y, double w, List<Style> styles) {
-        var bgColor = bgColor(styles);
-        if (bgColor.isPresent()) {
-            var bg = bgColor.get();
-            gc.setFill(bgColor.get());
-            gc.fillRect(x, y, w, fontMetrics.getLineHeight());
-            Color textColor = (bg.getBrightness() > 0.5)
-                    ? textColor(styles).darker()
-                    : textColor(styles).brighter();
-            gc.setStroke(textColor);
-            gc.setFill(textColor);
-            gc.fillText(text, x, y + fontMetrics.getAscent());
-        } else {
-            Color textColor = textColor(styles);
-            gc.setStroke(textColor);
-            gc.setFill(textColor);
-            gc.fillText(text, x, y + fontMetrics.getAscent());
+        Paint paint = paints.get(styles);
+        if (paint == null) {
+            paint = paint(styles);
+            paints.put(List.copyOf(styles), paint);
+        }
+        if (paint == runPaint && y == runY && Math.abs(runX + runWidth - x) < 0.01) {
+            run.append(text);
+            runWidth += w;
+            return;
         }
+        flush();
+        run.append(text);
+        runX = x;
+        runY = y;
+        runWidth = w;
+        runPaint = paint;
     }
 
-    private Color textColor(List<Style> styles) {
-        return color(styles.stream()
-                .filter(Style.TextColor.class::isInstance)
-                .map(Style.TextColor.class::cast)
-                .findFirst()
-                .map(Style.TextColor::colorString)
-                .orElse(Theme.dark.fgColor()));
+    @Override
+    public void flush() {
+        if (runPaint == null) return;
+        if (runPaint.bg() != null) {
+            fill(runPaint.bg());
+            gc.fillRect(runX, runY, runWidth, fontMetrics.getLineHeight());
+        }
+        fill(runPaint.fg());
+        gc.fillText(run.toString(), runX, runY + fontMetrics.getAscent());
+        run.setLength(0);
+        runPaint = null;
     }
 
-    private Optional<Color> bgColor(List<Style> styles) {
-        return styles.stream()
-                .filter(Style.BgColor.class::isInstance)
-                .map(Style.BgColor.class::cast)
-                .findFirst()
-                .map(Style.BgColor::colorString)
-                .map(this::color);
+    private Paint paint(List<Style> styles) {
+        Color fg = null;
+        Color bg = null;
+        for (Style style : styles) {
+            if (fg == null && style instanceof Style.TextColor c) {
+                fg = color(c.colorString());
+            } else if (bg == null && style instanceof Style.BgColor c) {
+                bg = color(c.colorString());
+            }
+        }
+        if (fg == null) {
+            fg = color(Theme.dark.fgColor());
+        }
+        if (bg != null) {
+            fg = (bg.getBrightness() > 0.5) ? fg.darker() : fg.brighter();
+        }
+        return new Paint(fg, bg);
+    }
+
+    private void fill(Color color) {
+        if (color != fill) {
+            gc.setFill(color);
+            fill = color;
+        }
+    }
+
+    private void stroke(Color color) {
+        if (color != stroke) {
+            gc.setStroke(color);
+            stroke = color;
+        }
     }
 
     @Override
     public void caret(double x, double y) {
+        flush();
         gc.setLineDashes(0);
-        gc.setStroke(Color.ORANGE);
+        stroke(Color.ORANGE);
         gc.setLineWidth(1.5);
         gc.strokeLine(x - 1, y, x - 1, y + fontMetrics.getLineHeight());
     }
 
     @Override
     public void select(double x1, double y1, double x2, double y2, double l, double r) {
+        flush();
         double lineHeight = fontMetrics().getLineHeight();
-        gc.setFill(color(Theme.dark.paleHighlightColor()));
+        fill(color(Theme.dark.paleHighlightColor()));
         if (y1 == y2) {
             gc.fillRect(Math.min(x1, x2), y1, Math.abs(x2 - x1), lineHeight);
             return;
@@ -128,23 +174,25 @@ public class FxDraw implements Draw {
 
     @Override
     public void underline(double x1, double y1, double x2, double y2) {
+        flush();
         double height = fontMetrics().getAscent();
-        gc.setStroke(Color.LIGHTGRAY);
+        stroke(Color.LIGHTGRAY);
         gc.setLineWidth(1);
         gc.strokeLine(x1, y1 + height, x2, y2 + height);
     }
 
     @Override
     public void hLine(double x, double y, double w) {
-        gc.setStroke(Color.ORANGE);
+        flush();
+        stroke(Color.ORANGE);
         gc.setLineWidth(2);
         gc.strokeLine(x, y, x + w, y);
     }
 
     @Override
     public void rect(double x, double y, double w, double h) {
-        Color color = color(Theme.dark.uiBaseColor());
-        gc.setFill(color);
+        flush();
+        fill(color(Theme.dark.uiBaseColor()));
         gc.fillRect(x, y, w, h);
     }
 
@@ -164,4 +212,11 @@ public class FxDraw implements Draw {
         return colors.computeIfAbsent(name, Color::web);
     }
 
+    /**
+     * The resolved paint of a combination of styles.
+     * @param fg the text color
+     * @param bg the background color, or {@code null}
+     */
+    private record Paint(Color fg, Color bg) { }
+
 }
\ No newline at end of file
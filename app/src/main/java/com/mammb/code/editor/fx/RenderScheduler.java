@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.fx;
+
+import javafx.animation.AnimationTimer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The render scheduler.
+ * Coalesces draw requests so that the pane is drawn at most once per pulse.
+ * Queued tasks are applied as a batch just before the draw.
+ * While held, both the queued tasks and the draw wait for the release, so that the model
+ * is left untouched, such as while it is saved in the background.
+ * @author Naotsugu Kobayashi
+ */
+public class RenderScheduler extends AnimationTimer {
+
+    /** The nominal interval of a pulse, in nanoseconds. */
+    private static final long PULSE_NANOS = 1_000_000_000L / 60;
+
+    /** The draw. */
+    private final Runnable draw;
+    /** The tasks to be applied before the next draw. */
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    /** Whether the pane needs to be drawn. */
+    private boolean dirty = false;
+    /** The number of holds not yet released. */
+    private int holds = 0;
+    /** Whether the queued tasks are being applied. */
+    private boolean running = false;
+
+    private long requests = 0;
+    private long frames = 0;
+    private long droppedFrames = 0;
+    private long lastNanos = 0;
+    private long maxNanos = 0;
+    private long totalNanos = 0;
+
+    public RenderScheduler(Runnable draw) {
+        this.draw = draw;
+    }
+
+    /**
+     * Request a draw at the next pulse.
+     */
+    public void request() {
+        requests++;
+        dirty = true;
+        start();
+    }
+
+    /**
+     * Queue the task to be applied before the next draw.
+     * @param task the task
+     */
+    public void enqueue(Runnable task) {
+        pending.add(task);
+        request();
+    }
+
+    /**
+     * Hold the queued tasks and the draw until {@link #release()}.
+     * Each hold needs a release of its own.
+     */
+    public void hold() {
+        holds++;
+    }
+
+    /**
+     * Release a hold, and apply the held tasks now if no hold remains.
+     */
+    public void release() {
+        if (holds == 0) return;
+        if (--holds == 0) {
+            runPending();
+            request();
+        }
+    }
+
+    /**
+     * Get whether the queued tasks are held.
+     * @return {@code true} if held
+     */
+    public boolean isHeld() {
+        return holds > 0;
+    }
+
+    /**
+     * Apply the queued tasks now, unless held.
+     * A task that calls this method goes on with the tasks that follow it afterward.
+     */
+    public void runPending() {
+        if (running) return;
+        running = true;
+        try {
+            while (holds == 0 && !pending.isEmpty()) {
+                pending.poll().run();
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        if (holds > 0 || (!dirty && pending.isEmpty())) {
+            // a held draw is requested again on release
+            stop();
+            return;
+        }
+        long start = System.nanoTime();
+        runPending();
+        dirty = false;
+        draw.run();
+        lastNanos = System.nanoTime() - start;
+        maxNanos = Math.max(maxNanos, lastNanos);
+        totalNanos += lastNanos;
+        droppedFrames += lastNanos / PULSE_NANOS;
+        frames++;
+    }
+
+    /**
+     * Get the frame statistics.
+     * @return the frame statistics
+     */
+    public FrameStats stats() {
+        return new FrameStats(requests, frames, droppedFrames,
+                lastNanos / 1e6, maxNanos / 1e6, frames == 0 ? 0 : totalNanos / 1e6 / frames);
+    }
+
+    /**
+     * The frame statistics.
+     * @param requests the number of draw requests
+     * @param frames the number of frames drawn
+     * @param droppedFrames the number of pulses missed because a frame took longer than a pulse
+     * @param lastMillis the time of the last frame in milliseconds
+     * @param maxMillis the maximum time of a frame in milliseconds
+     * @param averageMillis the average time of a frame in milliseconds
+     */
+    public record FrameStats(long requests, long frames, long droppedFrames,
+            double lastMillis, double maxMillis, double averageMillis) { }
+
+}
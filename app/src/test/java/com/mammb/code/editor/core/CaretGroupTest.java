@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link CaretGroup}.
+ * @author Naotsugu Kobayashi
+ */
+class CaretGroupTest {
+
+    @Test
+    void primaryCaretIsKeptThroughMerge() {
+        var group = CaretGroup.of();
+        group.getFirst().at(5, 1);
+        group.add(List.of(Point.of(1, 0), Point.of(9, 0), Point.of(5, 1)));
+
+        assertEquals(3, group.size());
+        assertEquals(Point.of(5, 1), point(group.getFirst()));
+        assertEquals(List.of(Point.of(1, 0), Point.of(5, 1), Point.of(9, 0)), points(group));
+    }
+
+    @Test
+    void primaryCaretFollowsTheEditedPoints() {
+        var group = CaretGroup.of();
+        group.getFirst().at(5, 1);
+        group.add(List.of(Point.of(1, 0), Point.of(9, 0)));
+
+        group.at(List.of(Point.of(2, 0), Point.of(7, 0), Point.of(12, 0)));
+
+        assertEquals(Point.of(7, 0), point(group.getFirst()));
+    }
+
+    @Test
+    void uniqueKeepsThePrimaryCaret() {
+        var group = CaretGroup.of();
+        group.getFirst().at(5, 1);
+        group.add(List.of(Point.of(1, 0), Point.of(9, 0)));
+
+        var caret = group.unique();
+
+        assertEquals(1, group.size());
+        assertEquals(Point.of(5, 1), point(caret));
+        assertEquals(List.of(Point.of(5, 1)), points(group));
+    }
+
+    private static Point point(Caret caret) {
+        return Point.of(caret.row(), caret.col());
+    }
+
+    private static List<Point> points(CaretGroup group) {
+        return group.points().stream().map(p -> Point.of(p.row(), p.col())).toList();
+    }
+
+}
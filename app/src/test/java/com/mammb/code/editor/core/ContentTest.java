@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.Caret.Range;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link Content}.
+ * @author Naotsugu Kobayashi
+ */
+class ContentTest {
+
+    @Test
+    void replaceRanges() {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), "abc\ndef\nghi");
+
+        var points = content.replace(List.of(
+                new Range(Point.of(2, 1), Point.of(2, 2)),
+                new Range(Point.of(0, 1), Point.of(1, 1))), "X\nY");
+
+        assertEquals(List.of(Point.of(1, 1), Point.of(3, 1)), points);
+        assertEquals("aX\n", content.getText(0));
+        assertEquals("Yef\n", content.getText(1));
+        assertEquals("gX\n", content.getText(2));
+        assertEquals("Yi", content.getText(3));
+    }
+
+    @Test
+    void replaceRangesFarApart() {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), IntStream.range(0, 10_000)
+                .mapToObj(i -> "row" + i).collect(Collectors.joining("\n")));
+
+        var points = content.replace(List.of(
+                new Range(Point.of(0, 0), Point.of(0, 3)),
+                new Range(Point.of(9_999, 0), Point.of(9_999, 3))), "line\n");
+
+        assertEquals(List.of(Point.of(1, 0), Point.of(10_001, 0)), points);
+        assertEquals("line\n", content.getText(0));
+        assertEquals("0\n", content.getText(1));
+        assertEquals("row5000\n", content.getText(5_001));
+        assertEquals("line\n", content.getText(10_000));
+        assertEquals("9999", content.getText(10_001));
+    }
+
+    @Test
+    void undoReplacedRangesAsOneUnit() {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), "abc\ndef\nghi");
+        content.insert(Point.of(2, 3), "!");
+
+        var points = content.replace(List.of(
+                new Range(Point.of(0, 0), Point.of(0, 1)),
+                new Range(Point.of(1, 0), Point.of(1, 1)),
+                new Range(Point.of(2, 0), Point.of(2, 1))), "X");
+        content.insert(Point.of(0, 1), "y");
+        assertEquals("Xybc\nXef\nXhi!", text(content));
+
+        content.undo();
+        assertEquals("Xbc\nXef\nXhi!", text(content));
+        content.undo();
+        assertEquals("abc\ndef\nghi!", text(content));
+        assertEquals(points, content.redo());
+        assertEquals("Xbc\nXef\nXhi!", text(content));
+    }
+
+    private static String text(Content content) {
+        int last = content.rows() - 1;
+        return content.getText(Point.of(0, 0), Point.of(last, content.getText(last).length()));
+    }
+
+}
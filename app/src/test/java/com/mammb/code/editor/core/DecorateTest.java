@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.syntax.Syntax;
+import com.mammb.code.editor.core.text.RowText;
+import com.mammb.code.editor.core.text.Style.StyleSpan;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link Decorate}.
+ * @author Naotsugu Kobayashi
+ */
+class DecorateTest {
+
+    private final FontMetrics fm = new CountingFontMetrics();
+    /** The tasks queued to the lexer, run by the test. */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Test
+    void drawsPlainTextUntilLexed() {
+        var content = content("int a;\n/* x\ny */\nint b;");
+        var decorate = decorate(content);
+
+        decorate.prefetch(0, content.rows());
+        assertEquals(List.of(), spans(decorate, content, 2));
+
+        runTasks();
+        assertTrue(coversHead(spans(decorate, content, 2)));
+    }
+
+    @Test
+    void relexesRowsBelowTheEdit() {
+        var content = content("int a;\n/* x\ny */\nint b;");
+        var decorate = decorate(content);
+        decorate.prefetch(0, content.rows());
+        runTasks();
+
+        content.replace(Point.of(1, 0), Point.of(1, 3), "");
+        decorate.invalidate(1, 2);
+        decorate.prefetch(0, content.rows());
+        runTasks();
+
+        assertFalse(coversHead(spans(decorate, content, 2)));
+    }
+
+    @Test
+    void dropsRowsLexedBeforeAnEdit() {
+        var content = content("/*\nx\n*/\nx\n");
+        var decorate = decorate(content);
+        decorate.prefetch(0, content.rows());
+
+        // the rows are lexed after the edit has numbered them again
+        content.replace(Point.of(0, 0), Point.of(2, 0), "");
+        decorate.invalidate(0, 1);
+        runTasks();
+
+        assertEquals(List.of(), spans(decorate, content, 1));
+        decorate.prefetch(0, content.rows());
+        runTasks();
+        assertFalse(coversHead(spans(decorate, content, 1)));
+    }
+
+    @Test
+    void settlesRowsAboveAPrefetchFarBelow() {
+        var sb = new StringBuilder("/*\n");
+        sb.append("x\n".repeat(10_000));
+        sb.append("y */");
+        var content = content(sb.toString());
+        var decorate = decorate(content);
+
+        // each prefetch hands a limited number of rows to the lexer to settle
+        decorate.prefetch(content.rows() - 1, content.rows());
+        runTasks();
+        assertTrue(decorate.progress() < 1.0);
+        while (decorate.progress() < 1.0) {
+            decorate.prefetch(content.rows() - 1, content.rows());
+            runTasks();
+        }
+
+        assertTrue(coversHead(spans(decorate, content, content.rows() - 1)));
+    }
+
+    @Test
+    void reusesTheCachedSpansOfARow() {
+        var content = content("int a;\nb\nint c;");
+        var decorate = decorate(content);
+        decorate.prefetch(0, content.rows());
+        runTasks();
+
+        var spans = spans(decorate, content, 0);
+        assertFalse(spans.isEmpty());
+        assertSame(spans, spans(decorate, content, 0));
+        assertSame(List.of(), spans(decorate, content, 1));
+
+        decorate.highlights().add(new long[] { Highlights.pack(2, 4, 1) }, 1);
+        assertSame(spans, spans(decorate, content, 0));
+        assertEquals(spans(decorate, content, 2).size(), spans(decorate, content, 0).size() + 1);
+        assertThrows(UnsupportedOperationException.class, () -> spans(decorate, content, 2).clear());
+    }
+
+    private Decorate decorate(Content content) {
+        return new Decorate.DecorateImpl(Syntax.of("java"), content, tasks::add);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private List<StyleSpan> spans(Decorate decorate, Content content, int row) {
+        return decorate.apply(RowText.of(row, content.getText(row), fm));
+    }
+
+    private static boolean coversHead(List<StyleSpan> spans) {
+        return spans.stream().anyMatch(span -> span.offset() == 0 && span.length() > 0);
+    }
+
+    private static Content content(String text) {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), text);
+        return content;
+    }
+
+}
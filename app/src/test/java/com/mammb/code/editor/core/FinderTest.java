@@ -0,0 +1,155 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.text.Style;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link Finder}.
+ * @author Naotsugu Kobayashi
+ */
+class FinderTest {
+
+    /** The search tasks, run by the test. */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Highlights highlights = new Highlights(new Style.BgColor("#FDD835"));
+
+    @Test
+    void findsAllFromTheChunkAroundTheRow() {
+        var finder = finder(content(10_000));
+        List<Long> firsts = new ArrayList<>();
+
+        finder.find(Query.of("row5", false, false), 5_000);
+        runTasks();
+        finder.poll((packed, n) -> { firsts.add(packed[0]); highlights.add(packed, n); });
+        await(finder);
+
+        assertEquals(1111, highlights.size());
+        assertTrue(firsts.getFirst() >= Highlights.pack(4096, 0, 0)
+                && firsts.getFirst() < Highlights.pack(6144, 0, 0));
+        assertFalse(highlights.spans(5).isEmpty());
+        assertFalse(highlights.spans(5999).isEmpty());
+        assertTrue(highlights.spans(6).isEmpty());
+    }
+
+    @Test
+    void readsTheChunksOfEditableContentAtPolls() {
+        var finder = finder(content(100_000));
+
+        finder.find(Query.of("row1", false, false), 50_000);
+        assertEquals(1, tasks.size());
+        runTasks();
+        finder.poll(highlights::add);
+        assertEquals(4, tasks.size());
+    }
+
+    @Test
+    void restartsOverTheEditedContent() {
+        var content = content(10_000);
+        var finder = finder(content);
+
+        finder.find(Query.of("row1", false, false), 5_000);
+        runTasks();
+        finder.poll(highlights::add);
+        content.insert(Point.of(0, 0), "\n\n");
+        if (finder.restart(0)) highlights.clear();
+        await(finder);
+
+        assertEquals(1111, highlights.size());
+        assertTrue(highlights.spans(1).isEmpty());
+        assertFalse(highlights.spans(1 + 2).isEmpty());
+    }
+
+    @Test
+    void restartsNothingWhenNotFinding() {
+        var finder = finder(content(10));
+        assertFalse(finder.restart(0));
+    }
+
+    @Test
+    void cancelStopsTheFind() {
+        var finder = finder(content(10_000));
+
+        finder.find(Query.of("row5", false, false), 0);
+        finder.cancel();
+        runTasks();
+
+        assertEquals(1.0, finder.progress());
+        assertFalse(finder.poll((packed, n) -> fail()));
+    }
+
+    @Test
+    void extendsTheFindToTheAppendedRows(@TempDir Path dir) throws IOException {
+        Path path = Files.writeString(dir.resolve("a.txt"), "row1\nrow2 ro");
+        var content = new MappedContent(path, Runnable::run);
+        content.sync();
+        var finder = finder(content);
+        finder.find(Query.of("row", false, false), 0);
+        await(finder);
+        assertEquals(2, highlights.size());
+
+        Files.writeString(path, "w3\nrow4", StandardOpenOption.APPEND);
+        content.grow();
+        content.sync();
+        finder.extend();
+        await(finder);
+
+        assertEquals(4, highlights.size());
+        assertEquals(2, highlights.spans(1).size());
+        assertEquals(1, highlights.spans(2).size());
+    }
+
+    private Finder finder(Content content) {
+        return new Finder.FinderImpl(content, tasks::add);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void await(Finder finder) {
+        while (finder.progress() < 1.0) {
+            runTasks();
+            finder.poll(highlights::add);
+        }
+    }
+
+    private static Content content(int rows) {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), IntStream.range(0, rows)
+                .mapToObj(i -> "row" + i).collect(Collectors.joining("\n")));
+        return content;
+    }
+
+}
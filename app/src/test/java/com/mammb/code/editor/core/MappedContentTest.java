@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link MappedContent}.
+ * The file is indexed on the calling thread.
+ * @author Naotsugu Kobayashi
+ */
+class MappedContentTest {
+
+    @Test
+    void getText(@TempDir Path dir) throws IOException {
+        Path path = Files.writeString(dir.resolve("a.txt"), "a\nb\nc");
+        var content = mapped(path);
+
+        assertEquals(3, content.rows());
+        assertEquals("a\n", content.getText(0));
+        assertEquals("c", content.getText(2));
+        assertTrue(content.isReadOnly());
+    }
+
+    @Test
+    void readsRowsAcrossPages(@TempDir Path dir) throws IOException {
+        Path path = Files.writeString(dir.resolve("rows.txt"), IntStream.range(0, 1000)
+                .mapToObj(i -> "row" + i).collect(Collectors.joining("\n")));
+        var content = mapped(path);
+
+        assertEquals(1000, content.rows());
+        for (int row : new int[] { 999, 0, 128, 127, 500, 129, 998 }) {
+            assertEquals((row == 999) ? "row999" : "row" + row + "\n", content.getText(row));
+        }
+        for (int row = 0; row < 999; row++) {
+            assertEquals("row" + row + "\n", content.getText(row));
+        }
+    }
+
+    @Test
+    void servesTheRowsAppendedOnSync(@TempDir Path dir) throws IOException {
+        Path path = Files.writeString(dir.resolve("a.txt"), "0\n1");
+        var content = mapped(path);
+        assertEquals("1", content.getText(1));
+
+        append(path, "2\n3");
+        assertTrue(content.grow());
+        assertEquals(2, content.rows());
+        assertTrue(content.sync());
+
+        assertEquals(3, content.rows());
+        assertEquals("12\n", content.getText(1));
+        assertEquals("3", content.getText(2));
+    }
+
+    @Test
+    void doesNotCacheAPageDecodedBeforeSync(@TempDir Path dir) throws IOException {
+        Path path = Files.writeString(dir.resolve("a.txt"), "0\n1");
+        var content = mapped(path);
+
+        // a reader decodes the last page, and the rows change before it caches the page
+        var stale = content.page(0);
+        append(path, "2\n3");
+        content.grow();
+        content.sync();
+        content.cache(0, stale);
+
+        assertEquals("12\n", content.getText(1));
+        assertEquals("3", content.getText(2));
+    }
+
+    private static MappedContent mapped(Path path) {
+        var content = new MappedContent(path, Runnable::run);
+        content.sync();
+        return content;
+    }
+
+    private static void append(Path path, String text) throws IOException {
+        Files.writeString(path, text, StandardOpenOption.APPEND);
+    }
+
+}
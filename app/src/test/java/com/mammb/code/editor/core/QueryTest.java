@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link Query}.
+ * @author Naotsugu Kobayashi
+ */
+class QueryTest {
+
+    @Test
+    void literal() {
+        assertEquals(List.of("0-2", "5-7"), matches(Query.of("ab", false, false), "abxABab"));
+        assertEquals(List.of("1-3"), matches(Query.of("aa", false, false), "baaa"));
+        assertEquals(List.of(), matches(Query.of("abc", false, false), "ab"));
+    }
+
+    @Test
+    void literalIgnoringCase() {
+        assertEquals(List.of("0-2", "3-5", "5-7"), matches(Query.of("ab", false, true), "abxABab"));
+        assertEquals(List.of("0-3"), matches(Query.of("éÀ1", false, true), "ÉàX".replace('X', '1')));
+    }
+
+    @Test
+    void regex() {
+        assertEquals(List.of("0-3", "4-6"), matches(Query.of("a\\d+", true, false), "a12 a3 b4"));
+        assertEquals(List.of("3-4"), matches(Query.of("^c", true, false), "ab\ncd"));
+    }
+
+    private static List<String> matches(Query query, CharSequence text) {
+        List<String> matches = new ArrayList<>();
+        query.findAll(text, (start, end) -> matches.add(start + "-" + end));
+        return matches;
+    }
+
+}
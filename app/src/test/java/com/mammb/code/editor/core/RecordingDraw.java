@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core;
+
+import com.mammb.code.editor.core.text.Style;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The draw that records the texts on the screen.
+ * The texts drawn left of the gutter, such as line numbers, are not recorded as lines.
+ * @author Naotsugu Kobayashi
+ */
+public class RecordingDraw implements Draw {
+
+    private final FontMetrics fm;
+    /** The texts drawn at each y position. */
+    private final TreeMap<Double, List<Piece>> screen = new TreeMap<>();
+    /** The right end of the gutter. */
+    private double gutter = 0;
+
+    public RecordingDraw(FontMetrics fm) {
+        this.fm = fm;
+    }
+
+    /**
+     * Get the lines on the screen, without line endings.
+     * @return the lines on the screen
+     */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<Double, List<Piece>> entry : screen.entrySet()) {
+            var sb = new StringBuilder();
+            entry.getValue().stream()
+                    .filter(piece -> piece.x() >= gutter)
+                    .sorted(Comparator.comparingDouble(Piece::x))
+                    .forEach(piece -> sb.append(piece.text()));
+            lines.add(sb.toString().replaceAll("[\r\n]+$", ""));
+        }
+        return lines;
+    }
+
+    @Override
+    public void clear() {
+        screen.clear();
+    }
+
+    @Override
+    public void clear(double x, double y, double w, double h) {
+        screen.subMap(y, true, y + h, false).clear();
+    }
+
+    @Override
+    public void text(String text, double x, double y, double w, List<Style> styles) {
+        screen.computeIfAbsent(y, k -> new ArrayList<>()).add(new Piece(text, x));
+    }
+
+    @Override
+    public void rect(double x, double y, double w, double h) {
+        if (x == 0) gutter = w;
+    }
+
+    @Override public void flush() { }
+    @Override public void caret(double x, double y) { }
+    @Override public void select(double x1, double y1, double x2, double y2, double l, double r) { }
+    @Override public void underline(double x1, double y1, double x2, double y2) { }
+    @Override public void hLine(double x, double y, double w) { }
+
+    @Override
+    public FontMetrics fontMetrics() {
+        return fm;
+    }
+
+    private record Piece(String text, double x) { }
+
+}
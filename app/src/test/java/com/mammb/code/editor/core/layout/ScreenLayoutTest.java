@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.layout;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.Content;
+import com.mammb.code.editor.core.CountingFontMetrics;
+import com.mammb.code.editor.core.text.Text;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link ScreenLayout}.
+ * @author Naotsugu Kobayashi
+ */
+class ScreenLayoutTest {
+
+    @Test
+    void refreshBufferMeasuresOnlyTheEditedRows() {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), IntStream.range(0, 100)
+                .mapToObj(i -> "row" + i).collect(Collectors.joining("\n")));
+        var layout = ScreenLayout.of(content, new CountingFontMetrics());
+        layout.setScreenSize(800, CountingFontMetrics.LINE_HEIGHT * 10);
+        long misses = layout.cacheMisses();
+
+        content.insert(List.of(Point.of(0, 1), Point.of(1, 1)), "\n");
+        layout.refreshBuffer(0, 4);
+
+        assertEquals(List.of("r", "ow0", "r", "ow1", "row2", "row3", "row4", "row5", "row6", "row7"),
+                layout.texts().stream().map(Text::value).map(String::strip).toList());
+        assertEquals(4, layout.cacheMisses() - misses);
+    }
+
+}
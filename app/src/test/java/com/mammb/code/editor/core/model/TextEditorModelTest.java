@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mammb.code.editor.core.model;
+
+import com.mammb.code.editor.core.Caret.Point;
+import com.mammb.code.editor.core.Content;
+import com.mammb.code.editor.core.CountingFontMetrics;
+import com.mammb.code.editor.core.RecordingDraw;
+import com.mammb.code.editor.core.ScreenScroll;
+import com.mammb.code.editor.core.syntax.Syntax;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of {@link TextEditorModel}.
+ * @author Naotsugu Kobayashi
+ */
+class TextEditorModelTest {
+
+    private static final double MARGIN_TOP = 5;
+    private static final double MARGIN_LEFT = 70;
+
+    private final CountingFontMetrics fm = new CountingFontMetrics();
+    private final RecordingDraw draw = new RecordingDraw(fm);
+
+    @Test
+    void multiCaretInputOfNewLine() {
+        var content = content("ab\ncd\nef");
+        var model = model(content);
+        model.draw(draw);
+
+        model.click(x(1), y(0), false);
+        model.ctrlClick(x(1), y(1));
+        model.input("\n");
+        model.draw(draw);
+
+        assertEquals(List.of("a", "b", "c", "d", "ef"), screen(content));
+    }
+
+    @Test
+    void multiCaretBackspaceJoiningRows() {
+        var content = content("ab\ncd\nef");
+        var model = model(content);
+        model.draw(draw);
+
+        model.click(x(0), y(1), false);
+        model.ctrlClick(x(0), y(2));
+        model.backspace();
+        model.draw(draw);
+
+        assertEquals(List.of("abcdef"), screen(content));
+    }
+
+    @Test
+    void inputMeasuresOnlyTheEditedRow() {
+        String row = "0123456789".repeat(4);
+        var content = content(String.join("\n", IntStream.range(0, 100).mapToObj(i -> row).toList()));
+        var model = model(content);
+        model.draw(draw);
+
+        model.click(x(3), y(10), false);
+        fm.reset();
+        model.input("x");
+        model.draw(draw);
+
+        assertTrue(fm.advances() <= row.length() + 2, "advances: " + fm.advances());
+        assertEquals("012x3456789" + row.substring(10), draw.lines().get(10));
+    }
+
+    @Test
+    void newLineMeasuresOnlyTheEditedRows() {
+        String row = "0123456789".repeat(4);
+        var content = content(String.join("\n", IntStream.range(0, 100).mapToObj(i -> row).toList()));
+        var model = model(content);
+        model.draw(draw);
+
+        model.click(x(3), y(10), false);
+        fm.reset();
+        model.input("\n");
+        model.draw(draw);
+
+        assertTrue(fm.advances() <= (row.length() + 2) * 2, "advances: " + fm.advances());
+        assertEquals("012", draw.lines().get(10));
+        assertEquals(row.substring(3), draw.lines().get(11));
+        assertEquals(row, draw.lines().get(12));
+    }
+
+    @Test
+    void wrapRowsAtTheScreenWidth() {
+        String row = "0123456789".repeat(15);
+        var content = content(row + "\nab");
+        var model = model(content);
+        model.setSize(80 * CountingFontMetrics.ADVANCE + MARGIN_LEFT, 600 + MARGIN_TOP);
+
+        model.wrap();
+        model.draw(draw);
+        assertEquals(List.of(row.substring(0, 80), row.substring(80), "ab"), draw.lines().subList(0, 3));
+
+        model.click(x(1), y(2), false);
+        model.input("\n");
+        model.draw(draw);
+        assertEquals(List.of(row.substring(0, 80), row.substring(80), "a", "b"), draw.lines().subList(0, 4));
+
+        model.wrap();
+        model.draw(draw);
+        assertEquals(List.of(row, "a", "b"), draw.lines().subList(0, 3));
+    }
+
+    @Test
+    void readOnlyContentIgnoresEdits(@TempDir Path dir) throws IOException {
+        Path path = Files.writeString(dir.resolve("large.txt"), "ab\ncd\n");
+        var content = Content.readOnlyOf(path);
+        while (content.progress() < 1.0) Thread.onSpinWait();
+        var model = model(content);
+        model.draw(draw);
+
+        model.click(x(1), y(0), false);
+        model.input("x");
+        model.backspace();
+        model.delete();
+
+        assertTrue(model.isReadOnly());
+        assertEquals("ab\n", content.getText(0));
+        assertFalse(model.isModified());
+    }
+
+    private List<String> screen(Content content) {
+        return draw.lines().subList(0, content.rows());
+    }
+
+    private static Content content(String text) {
+        var content = Content.of();
+        content.insert(Point.of(0, 0), text);
+        return content;
+    }
+
+    private TextEditorModel model(Content content) {
+        var model = new TextEditorModel(content, fm, Syntax.of(""), new NoScroll());
+        model.setSize(800 + MARGIN_LEFT, 600 + MARGIN_TOP);
+        return model;
+    }
+
+    private static double x(int col) {
+        return MARGIN_LEFT + col * CountingFontMetrics.ADVANCE + 1;
+    }
+
+    private static double y(int line) {
+        return MARGIN_TOP + line * CountingFontMetrics.LINE_HEIGHT + 1;
+    }
+
+    private static class NoScroll implements ScreenScroll {
+        @Override public void vertical(int min, int max, int val, int len) { }
+        @Override public void horizontal(double min, double max, double val, double len) { }
+        @Override public double xVal() { return 0; }
+    }
+
+}